@@ -0,0 +1,106 @@
+package benchmarks;
+
+import managers.BudgetManager;
+import managers.BudgetMonitor;
+import managers.LedgerSummaryCache;
+import managers.SessionLoader;
+import managers.TransactionManager;
+import models.Money;
+import models.SessionSnapshot;
+import models.UserProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The totals behind the pie chart, the bar chart and the summary panel: the grouped
+ * SQL queries, the one-off summary load and full session load done at login, and the
+ * cached reads the dashboard performs on every redraw.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AggregationBenchmarks {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private TransactionManager transactionManager;
+    private LedgerSummaryCache summaryCache;
+    private SessionLoader sessionLoader;
+    private int userId;
+
+    @Setup(Level.Trial)
+    public void open() {
+        database = BenchmarkDatabase.open(rows, false);
+        transactionManager = new TransactionManager();
+        summaryCache = new LedgerSummaryCache(transactionManager);
+        userId = database.getUserId();
+        summaryCache.load(userId);
+        BudgetManager budgetManager = new BudgetManager();
+        sessionLoader = new SessionLoader(transactionManager, budgetManager, summaryCache,
+                new BudgetMonitor(transactionManager, budgetManager));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+    }
+
+    @Benchmark
+    public Map<String, Money> monthlyTotalsQuery() {
+        return transactionManager.getMonthlyTotals(userId, "Expense");
+    }
+
+    @Benchmark
+    public Map<String, Money> categoryTotalsQuery() {
+        return transactionManager.getCategoryTotals(userId, "Expense");
+    }
+
+    @Benchmark
+    public Map<String, Money> totalsByTypeQuery() {
+        return transactionManager.getTotalsByType(userId);
+    }
+
+    @Benchmark
+    public void summaryCacheLoad() {
+        summaryCache.load(userId);
+        BudgetManager budgetManager = new BudgetManager();
+        sessionLoader = new SessionLoader(transactionManager, budgetManager, summaryCache,
+                new BudgetMonitor(transactionManager, budgetManager));
+    }
+
+    @Benchmark
+    public SessionSnapshot sessionLoad() throws SQLException {
+        return sessionLoader.load(new UserProfile(userId, BenchmarkDatabase.USERNAME));
+    }
+
+    // Everything one dashboard redraw reads once the cache is warm
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void dashboardRedraw(Blackhole blackhole) {
+        blackhole.consume(summaryCache.getCategoryTotals(userId, "Expense"));
+        blackhole.consume(summaryCache.getMonthlyTotals(userId, "Income"));
+        blackhole.consume(summaryCache.getMonthlyTotals(userId, "Expense"));
+        blackhole.consume(summaryCache.getTotalsByType(userId));
+    }
+}
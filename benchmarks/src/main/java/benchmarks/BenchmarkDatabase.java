@@ -0,0 +1,171 @@
+package benchmarks;
+
+import database.DatabaseConnection;
+import database.DatabaseInitializer;
+import managers.BudgetManager;
+import managers.TransactionImporter;
+import managers.UserManager;
+import models.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Seeded SQLite files shared by the benchmarks.
+ *
+ * Each size is generated once into pfms.bench.dataDir (default bench-data/) through the
+ * application's own importer, so the rows look exactly like imported statements and the
+ * file is migrated by DatabaseInitializer like any user database. Later runs reuse it.
+ */
+final class BenchmarkDatabase {
+
+    static final String USERNAME = "bench";
+    static final String PASSWORD = "bench";
+    static final String[] CATEGORIES = {
+        "Groceries", "Rent", "Utilities", "Transport", "Dining", "Entertainment", "Health", "Insurance",
+        "Clothing", "Travel", "Education", "Gifts", "Subscriptions", "Phone", "Internet", "Pets",
+        "Household", "Fuel", "Coffee", "Charity"
+    };
+    static final String[] INCOME_CATEGORIES = {"Salary", "Bonus", "Interest", "Refund"};
+
+    // Roughly five years of history ending at a fixed day, so every seed is reproducible
+    private static final LocalDate LAST_DAY = LocalDate.of(2025, 12, 31);
+    private static final int DAYS_OF_HISTORY = 5 * 365;
+
+    private final Path file;
+    private final boolean scratch;
+    private final int userId;
+
+    private BenchmarkDatabase(Path file, boolean scratch, int userId) {
+        this.file = file;
+        this.scratch = scratch;
+        this.userId = userId;
+    }
+
+    /**
+     * Points DatabaseConnection at the seeded file with the given number of rows, creating it first if needed.
+     * Benchmarks that write get a scratch copy so the seed stays untouched between runs.
+     */
+    static BenchmarkDatabase open(int rows, boolean writable) {
+        DatabaseConnection.shutdown();
+        Path seed = seedFile(rows);
+        if (!Files.exists(seed)) {
+            createSeed(seed, rows);
+        }
+        Path target = seed;
+        if (writable) {
+            target = seed.resolveSibling("scratch-" + rows + "-" + ProcessHandle.current().pid() + ".db");
+            copy(seed, target);
+        }
+        use(target);
+        return new BenchmarkDatabase(target, writable, new UserManager().getUserId(USERNAME));
+    }
+
+    int getUserId() {
+        return userId;
+    }
+
+    void close() {
+        DatabaseConnection.shutdown();
+        if (scratch) {
+            deleteWithSidecars(file);
+        }
+    }
+
+    private static Path seedFile(int rows) {
+        Path dataDir = Paths.get(System.getProperty("pfms.bench.dataDir", "bench-data"));
+        return dataDir.resolve("pfms-" + rows + ".db");
+    }
+
+    private static void use(Path file) {
+        DatabaseConnection.shutdown();
+        System.setProperty("pfms.db.path", file.toString());
+        DatabaseInitializer.initializeDatabase();
+    }
+
+    // Built under a temporary name and moved into place, so an interrupted run never leaves a partial seed
+    private static void createSeed(Path seed, int rows) {
+        try {
+            Files.createDirectories(seed.getParent());
+            Path building = seed.resolveSibling(seed.getFileName() + ".building");
+            Path csv = seed.resolveSibling(seed.getFileName() + ".csv");
+            deleteWithSidecars(building);
+            writeCsv(csv, rows);
+
+            use(building);
+            UserManager users = new UserManager();
+            users.registerUser(USERNAME, PASSWORD);
+            int userId = users.getUserId(USERNAME);
+            TransactionImporter.ImportProgress result = new TransactionImporter().importFile(userId, csv, null);
+            BudgetManager budgets = new BudgetManager();
+            for (String category : CATEGORIES) {
+                budgets.setBudget(userId, category, Money.ofCents(50_000));
+            }
+            DatabaseConnection.shutdown();
+
+            Files.delete(csv);
+            Files.move(building, seed, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Seeded " + seed + ": " + result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not seed " + seed, e);
+        }
+    }
+
+    interface RowSink {
+        void accept(LocalDate date, String category, long amountCents, String type) throws IOException;
+    }
+
+    /**
+     * Produces the same pseudo-random ledger for a given size every time: about one row in ten is income.
+     */
+    static void generateRows(int rows, RowSink sink) throws IOException {
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            LocalDate date = LAST_DAY.minusDays(random.nextInt(DAYS_OF_HISTORY));
+            boolean income = random.nextInt(10) == 0;
+            String category = income
+                    ? INCOME_CATEGORIES[random.nextInt(INCOME_CATEGORIES.length)]
+                    : CATEGORIES[random.nextInt(CATEGORIES.length)];
+            long amountCents = income ? 50_000 + random.nextInt(300_000) : 100 + random.nextInt(25_000);
+            sink.accept(date, category, amountCents, income ? "Income" : "Expense");
+        }
+    }
+
+    private static void writeCsv(Path csv, int rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write("date,description,amount,type\n");
+            generateRows(rows, (date, category, amountCents, type) ->
+                    out.write(date + "," + category + "," + Money.ofCents(amountCents) + "," + type + "\n"));
+        }
+    }
+
+    private static void copy(Path from, Path to) {
+        try {
+            deleteWithSidecars(to);
+            Files.copy(from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteWithSidecars(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-wal"));
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-shm"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import managers.BudgetManager;
+import managers.BudgetMonitor;
+import managers.TransactionManager;
+import models.Money;
+import models.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BudgetManager reads and upserts. The budget table is small, but it shares the file
+ * (and the page cache) with the ledger, so it is measured at every ledger size.
+ * budgetCheck measures the BudgetMonitor work done after each write, which should not grow with the ledger.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BudgetBenchmarks {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private BudgetManager budgetManager;
+    private int userId;
+    private int updates;
+    private BudgetMonitor budgetMonitor;
+    private Transaction expense;
+
+    @Setup(Level.Trial)
+    public void open() {
+        database = BenchmarkDatabase.open(rows, true);
+        budgetManager = new BudgetManager();
+        userId = database.getUserId();
+        budgetMonitor = new BudgetMonitor(new TransactionManager(), budgetManager);
+        budgetMonitor.load(userId);
+        expense = new Transaction(0, LocalDate.now().toString(), BenchmarkDatabase.CATEGORIES[0],
+                Money.ofCents(1_234), "Expense");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+    }
+
+    @Benchmark
+    public Map<String, Money> getBudgets() {
+        return budgetManager.getBudgets(userId);
+    }
+
+    @Benchmark
+    public void setBudget() throws SQLException {
+        int n = updates++;
+        String category = BenchmarkDatabase.CATEGORIES[n % BenchmarkDatabase.CATEGORIES.length];
+        budgetManager.setBudget(userId, category, Money.ofCents(40_000 + n % 200 * 100));
+    }
+
+    // An add and its matching delete, so the counter stays where load() left it
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Money budgetCheck() {
+        budgetMonitor.onTransactionAdded(userId, expense);
+        budgetMonitor.onTransactionDeleted(userId, expense);
+        return budgetMonitor.getSpent(userId, expense.getDescription());
+    }
+}
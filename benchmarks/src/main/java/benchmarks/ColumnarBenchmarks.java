@@ -0,0 +1,110 @@
+package benchmarks;
+
+import models.Money;
+import models.Transaction;
+import models.TransactionColumns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory group-by over the same ledger held two ways: the List&lt;Transaction&gt; that
+ * getTransactions returns, grouped with Collectors.groupingBy as the dashboard used to do
+ * (months keyed by the first seven characters of the ISO date, as it did),
+ * and a TransactionColumns snapshot. Run with -prof gc to compare allocation per call.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumnarBenchmarks {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private List<Transaction> transactions;
+    private TransactionColumns columns;
+    private long[] categoryTotals;
+    private long[] monthlyTotals;
+
+    @Setup(Level.Trial)
+    public void build() {
+        transactions = objectLedger(rows);
+        columns = columnarLedger(rows);
+        categoryTotals = new long[columns.getCategoryCount()];
+        monthlyTotals = new long[columns.getMonthCount()];
+    }
+
+    @Benchmark
+    public Map<String, Long> categoryTotalsGroupingBy() {
+        return transactions.stream()
+                .filter(t -> t.getType().equals("Expense"))
+                .collect(Collectors.groupingBy(Transaction::getDescription,
+                        Collectors.summingLong(t -> t.getAmount().getCents())));
+    }
+
+    @Benchmark
+    public long[] categoryTotalsColumnar() {
+        return columns.categoryTotals(true, categoryTotals);
+    }
+
+    @Benchmark
+    public Map<String, Long> monthlyTotalsGroupingBy() {
+        return transactions.stream()
+                .filter(t -> t.getType().equals("Expense"))
+                .collect(Collectors.groupingBy(t -> t.getDate().substring(0, 7),
+                        Collectors.summingLong(t -> t.getAmount().getCents())));
+    }
+
+    @Benchmark
+    public long[] monthlyTotalsColumnar() {
+        return columns.monthlyTotals(true, monthlyTotals);
+    }
+
+    /**
+     * The ledger as getTransactions builds it: every row has its own date, category and type strings.
+     */
+    static List<Transaction> objectLedger(int rows) {
+        List<Transaction> transactions = new ArrayList<>(rows);
+        generate(rows, (date, category, amountCents, type) -> transactions.add(new Transaction(transactions.size() + 1,
+                date.toString(), new String(category), Money.ofCents(amountCents), new String(type))));
+        return transactions;
+    }
+
+    // Category ids are assigned in first-seen order, as the Categories table would
+    static TransactionColumns columnarLedger(int rows) {
+        TransactionColumns.Builder builder = new TransactionColumns.Builder(rows);
+        Map<String, Integer> categoryIds = new LinkedHashMap<>();
+        generate(rows, (date, category, amountCents, type) -> builder.add((int) date.toEpochDay(),
+                categoryIds.computeIfAbsent(category, name -> categoryIds.size()), amountCents, type));
+        return builder.build(categoryIds.keySet().toArray(new String[0]));
+    }
+
+    private static void generate(int rows, BenchmarkDatabase.RowSink sink) {
+        try {
+            BenchmarkDatabase.generateRows(rows, sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
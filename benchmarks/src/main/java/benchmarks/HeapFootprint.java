@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.util.function.IntFunction;
+
+/**
+ * Prints the retained heap of one million transactions as a List&lt;Transaction&gt; and as a
+ * TransactionColumns snapshot. Run it on its own JVM:
+ *
+ * <pre>
+ * java -Xmx4g -cp benchmarks/target/benchmarks.jar benchmarks.HeapFootprint [rows]
+ * </pre>
+ */
+public class HeapFootprint {
+
+    private static Object retained;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        report("List<Transaction>", rows, ColumnarBenchmarks::objectLedger);
+        report("TransactionColumns", rows, ColumnarBenchmarks::columnarLedger);
+    }
+
+    private static void report(String label, int rows, IntFunction<Object> build) {
+        retained = null;
+        long before = usedHeap();
+        retained = build.apply(rows);
+        long bytes = usedHeap() - before;
+        System.out.printf("%-20s %,12d bytes  %6.1f bytes/row  %7.1f MB per million rows%n",
+                label, bytes, (double) bytes / rows, bytes * (1_000_000.0 / rows) / (1024 * 1024));
+    }
+
+    // Several collections so the number reflects live objects only
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import managers.TransactionManager;
+import models.Money;
+import models.Transaction;
+import models.TransactionPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inserts and reads through TransactionManager against the seeded ledgers.
+ * Every trial works on a scratch copy, so the rows added by addTransaction never leak into the seed.
+ * addTransactionConcurrent runs 16 writer threads; their inserts share group commits on the write queue.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransactionBenchmarks {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private TransactionManager transactionManager;
+    private int userId;
+    private final AtomicLong inserted = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void open() {
+        database = BenchmarkDatabase.open(rows, true);
+        transactionManager = new TransactionManager();
+        userId = database.getUserId();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Transaction addTransaction() {
+        Transaction transaction = nextTransaction();
+        transactionManager.addTransaction(userId, transaction);
+        return transaction;
+    }
+
+    @Benchmark
+    @Threads(16)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Transaction addTransactionConcurrent() {
+        return addTransaction();
+    }
+
+    private Transaction nextTransaction() {
+        long n = inserted.getAndIncrement();
+        String category = BenchmarkDatabase.CATEGORIES[(int) (n % BenchmarkDatabase.CATEGORIES.length)];
+        return new Transaction(0, LocalDate.of(2025, 12, 31).minusDays(n % 365).toString(),
+                category, Money.ofCents(100 + n % 10_000), "Expense");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Transaction> getTransactions() {
+        return transactionManager.getTransactions(userId);
+    }
+
+    // What the table asks for when the dashboard opens
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public TransactionPage getFirstPage() {
+        return transactionManager.getTransactionsPage(userId, null, 200);
+    }
+}
@@ -0,0 +1,212 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process copy of the Categories table. Rows and budgets store a small integer id;
+ * this maps ids to names and back without a query, and hands out one shared String
+ * instance per category so loaded rows do not each carry their own copy of the name.
+ *
+ * Ids are never reused or deleted, so a cached entry stays valid for the life of the file.
+ * Another process may add categories; an unknown id triggers a reload. An unknown name does
+ * too, once: it is then remembered as missing until a later reload finds it, so e.g. a filter
+ * on a misspelt category does not reload the table on every request. Callers that already hold
+ * a connection pass it, and a reload reads through it instead of waiting for a second one from
+ * the pool.
+ */
+public class CategoryDictionary {
+
+    // The no-op update makes RETURNING report the id whether or not the row already existed
+    private static final String INSERT_QUERY = "INSERT INTO Categories (name) VALUES (?) "
+            + "ON CONFLICT(name) DO UPDATE SET name = excluded.name RETURNING id";
+
+    // Bounds the remembered misses, which come from user input such as a category filter
+    private static final int MAX_MISSES = 1_000;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Set<String> misses = ConcurrentHashMap.newKeySet();
+    private volatile String[] names = new String[0];
+    private volatile boolean loaded;
+
+    CategoryDictionary() {
+    }
+
+    /**
+     * Returns the id of a category, adding it to the Categories table first if it is new.
+     * The insert commits on its own, so call this before opening a write transaction:
+     * an id handed out inside a transaction that later rolls back would point at nothing.
+     */
+    public int idOf(String name) throws SQLException {
+        ensureLoaded();
+        Integer id = ids.get(name);
+        return id != null ? id : insert(name);
+    }
+
+    /**
+     * Adds every name that is not in the dictionary yet in a single write transaction, e.g. for
+     * an imported chunk with many new payees. Like idOf(), call it outside a write transaction.
+     */
+    public void addAll(Collection<String> candidates) throws SQLException {
+        ensureLoaded();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String name : candidates) {
+            if (!ids.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> added = new LinkedHashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_QUERY)) {
+            conn.setAutoCommit(false);
+            try {
+                for (String name : missing) {
+                    stmt.setString(1, name);
+                    // Closing the result set finishes the INSERT ... RETURNING before the next one
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        rs.next();
+                        added.put(name, rs.getInt(1));
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        // Only committed ids are cached
+        added.forEach((name, id) -> put(id, name));
+    }
+
+    /**
+     * Returns the id of an existing category, or -1 if there is none with that name.
+     */
+    public int find(String name) throws SQLException {
+        return find(null, name);
+    }
+
+    /**
+     * Same as {@link #find(String)}, reloading through a connection the caller holds if needed.
+     */
+    public int find(Connection conn, String name) throws SQLException {
+        ensureLoaded(conn);
+        Integer id = ids.get(name);
+        if (id == null && !misses.contains(name)) {
+            reload(conn);
+            id = ids.get(name);
+            if (id == null) {
+                if (misses.size() >= MAX_MISSES) {
+                    misses.clear();
+                }
+                misses.add(name);
+            }
+        }
+        return id == null ? -1 : id;
+    }
+
+    public String nameOf(int id) throws SQLException {
+        return nameOf(null, id);
+    }
+
+    /**
+     * Same as {@link #nameOf(int)}, reloading through a connection the caller holds if needed.
+     */
+    public String nameOf(Connection conn, int id) throws SQLException {
+        ensureLoaded(conn);
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            reload(conn);
+            current = names;
+        }
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Every known name indexed by id; slots of ids that do not exist are null.
+     */
+    public String[] names() throws SQLException {
+        return names(null);
+    }
+
+    public String[] names(Connection conn) throws SQLException {
+        ensureLoaded(conn);
+        return names.clone();
+    }
+
+    private void ensureLoaded(Connection conn) throws SQLException {
+        if (!loaded) {
+            reload(conn);
+        }
+    }
+
+    private void ensureLoaded() throws SQLException {
+        ensureLoaded(null);
+    }
+
+    // Reads through the given connection, or a pooled read connection when it is null
+    private synchronized void reload(Connection conn) throws SQLException {
+        if (conn == null) {
+            try (Connection own = DatabaseConnection.getReadConnection()) {
+                reload(own);
+            }
+            return;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM Categories")) {
+            while (rs.next()) {
+                put(rs.getInt("id"), rs.getString("name"));
+            }
+        }
+        loaded = true;
+    }
+
+    // Not synchronized: holding the single writer connection already serializes inserts, and the
+    // writer thread may be waiting on this monitor in nameOf() while it holds that connection
+    private int insert(String name) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_QUERY)) {
+            Integer existing = ids.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            stmt.setString(1, name);
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+            int id = rs.getInt(1);
+            put(id, name);
+            return id;
+        }
+    }
+
+    // Keeps the first String instance seen for a name, so every lookup returns the same object.
+    // Slots are filled in place and the array only grows; a reader that races a write sees
+    // null, and nameOf() then reloads under the lock.
+    private synchronized void put(int id, String name) {
+        String[] current = names;
+        if (id < current.length && current[id] != null) {
+            return;
+        }
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, Math.max(id + 1, current.length * 2));
+        }
+        current[id] = name;
+        names = current;
+        ids.put(name, id);
+        misses.remove(name);
+    }
+}
@@ -0,0 +1,408 @@
+package database;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteLimits;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of SQLite connections: a fixed number of read-only reader
+ * connections and a single writer. Physical connections are opened once with
+ * the tuned pragmas and handed out as leases; closing a lease returns the
+ * connection to the pool instead of closing the database file.
+ *
+ * SQLite only allows one writer at a time, so writes are serialized on the
+ * writer lock here rather than failing with SQLITE_BUSY inside the driver.
+ */
+public class ConnectionPool {
+
+    // Files a connection can have attached, e.g. the archived years of TransactionArchive.
+    // SQLite defaults to 10; 125 is the most its compile-time limit allows.
+    static final int MAX_ATTACHED = 125;
+
+    private final String url;
+    private final int maxReaders;
+    private final long acquireTimeoutMillis;
+    private final int cacheSizeKib;
+    private final long mmapSizeBytes;
+    private final int busyTimeoutMillis;
+    private final int statementCacheSize;
+
+    private final BlockingQueue<Connection> idleReaders;
+    private final List<Connection> allReaders = new ArrayList<>();
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private Connection writer;
+    private boolean closed;
+
+    private final AtomicInteger activeReaders = new AtomicInteger();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ConnectionPool(String url, int maxReaders, long acquireTimeoutMillis,
+                          int cacheSizeKib, long mmapSizeBytes, int busyTimeoutMillis, int statementCacheSize) {
+        this.url = url;
+        this.maxReaders = maxReaders;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.cacheSizeKib = cacheSizeKib;
+        this.mmapSizeBytes = mmapSizeBytes;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.idleReaders = new ArrayBlockingQueue<>(maxReaders);
+    }
+
+    /**
+     * Creates a pool configured from system properties:
+     * pfms.db.path, pfms.db.readers, pfms.db.acquireTimeoutMs,
+     * pfms.db.cacheSizeKib, pfms.db.mmapSize, pfms.db.busyTimeoutMs and
+     * pfms.db.statementCacheSize (prepared statements kept per connection).
+     */
+    public static ConnectionPool fromSystemProperties() {
+        return new ConnectionPool(
+                "jdbc:sqlite:" + System.getProperty("pfms.db.path", "pfms.db"),
+                Integer.getInteger("pfms.db.readers", 4),
+                Long.getLong("pfms.db.acquireTimeoutMs", 30_000L),
+                Integer.getInteger("pfms.db.cacheSizeKib", 20_000),
+                Long.getLong("pfms.db.mmapSize", 256L * 1024 * 1024),
+                Integer.getInteger("pfms.db.busyTimeoutMs", 5_000),
+                Integer.getInteger("pfms.db.statementCacheSize", 64));
+    }
+
+    /**
+     * Borrows the single writer connection. Blocks while another thread holds it;
+     * a thread that already holds the writer gets it again (re-entrant).
+     */
+    public Connection getWriteConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for the writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+        try {
+            synchronized (this) {
+                ensureOpen();
+                if (writer == null || writer.isClosed()) {
+                    writer = openConnection(false);
+                }
+            }
+            return lease(writer, true);
+        } catch (SQLException e) {
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs VACUUM on the writer. SQLite refuses to VACUUM while the connection has prepared
+     * statements open, so the writer's statement cache is emptied first.
+     */
+    public void vacuum() throws SQLException {
+        try (Connection conn = getWriteConnection()) {
+            StatementCache cache;
+            synchronized (this) {
+                cache = statementCaches.get(writer);
+            }
+            if (cache != null) {
+                cache.closeAll();
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("VACUUM");
+            }
+        }
+    }
+
+    /**
+     * Borrows a read-only connection, opening a new one while fewer than the
+     * configured number of readers exist, otherwise waiting for one to be returned.
+     */
+    public Connection getReadConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = idleReaders.poll();
+        if (connection == null) {
+            synchronized (this) {
+                ensureOpen();
+                if (allReaders.size() < maxReaders) {
+                    connection = openConnection(true);
+                    allReaders.add(connection);
+                }
+            }
+        }
+        if (connection == null) {
+            try {
+                connection = idleReaders.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a reader connection", e);
+            }
+            if (connection == null) {
+                throw new SQLException("Timed out waiting for a reader connection");
+            }
+        }
+        recordWait(System.nanoTime() - start);
+        activeReaders.incrementAndGet();
+        return lease(connection, false);
+    }
+
+    public synchronized void close() {
+        closed = true;
+        for (Connection reader : allReaders) {
+            closeQuietly(reader);
+        }
+        allReaders.clear();
+        idleReaders.clear();
+        if (writer != null) {
+            closeQuietly(writer);
+            writer = null;
+        }
+        statementCaches.clear();
+    }
+
+    public PoolStats getStats() {
+        int idle = idleReaders.size();
+        int opened;
+        synchronized (this) {
+            opened = allReaders.size();
+        }
+        return new PoolStats(activeReaders.get(), idle, opened, maxReaders, writerLock.isLocked(),
+                writerLock.getQueueLength(), waitCount.get(), totalWaitNanos.get(), maxWaitNanos.get());
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been closed");
+        }
+    }
+
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        connection.unwrap(SQLiteConnection.class).setLimit(SQLiteLimits.SQLITE_LIMIT_ATTACHED, MAX_ATTACHED);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            // A negative cache_size is interpreted by SQLite as KiB rather than pages
+            stmt.execute("PRAGMA cache_size = -" + cacheSizeKib);
+            stmt.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+        statementCaches.put(connection, new StatementCache(connection, statementCacheSize));
+        return connection;
+    }
+
+    private void release(Connection connection, boolean isWriter) {
+        if (isWriter) {
+            try {
+                if (writerLock.getHoldCount() == 1) {
+                    resetState(connection);
+                }
+            } finally {
+                writerLock.unlock();
+            }
+            return;
+        }
+        activeReaders.decrementAndGet();
+        resetState(connection);
+        synchronized (this) {
+            if (closed) {
+                closeQuietly(connection);
+                return;
+            }
+        }
+        idleReaders.offer(connection);
+    }
+
+    // Leaves the connection in autocommit mode with no open transaction for the next borrower
+    private void resetState(Connection connection) {
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error resetting pooled connection: " + e.getMessage());
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void closeQuietly(Connection connection) {
+        StatementCache cache;
+        synchronized (this) {
+            cache = statementCaches.remove(connection);
+        }
+        if (cache != null) {
+            cache.closeAll();
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private Connection lease(Connection physical, boolean isWriter) {
+        StatementCache cache;
+        synchronized (this) {
+            cache = statementCaches.get(physical);
+        }
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new LeaseHandler(physical, cache, isWriter));
+    }
+
+    /**
+     * Forwards every call to the physical connection until the lease is closed,
+     * at which point the connection goes back to the pool.
+     */
+    private class LeaseHandler implements InvocationHandler {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private final boolean isWriter;
+        private boolean released;
+
+        LeaseHandler(Connection physical, StatementCache statementCache, boolean isWriter) {
+            this.physical = physical;
+            this.statementCache = statementCache;
+            this.isWriter = isWriter;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(physical, isWriter);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || physical.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (isWriter ? "writer" : "reader") + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection lease has already been closed");
+            }
+            if (statementCache != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                return statementCache.prepare((String) args[0]);
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public static class PoolStats {
+        private final int activeReaders;
+        private final int idleReaders;
+        private final int openReaders;
+        private final int maxReaders;
+        private final boolean writerInUse;
+        private final int writerQueueLength;
+        private final long waitCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        PoolStats(int activeReaders, int idleReaders, int openReaders, int maxReaders, boolean writerInUse,
+                  int writerQueueLength, long waitCount, long totalWaitNanos, long maxWaitNanos) {
+            this.activeReaders = activeReaders;
+            this.idleReaders = idleReaders;
+            this.openReaders = openReaders;
+            this.maxReaders = maxReaders;
+            this.writerInUse = writerInUse;
+            this.writerQueueLength = writerQueueLength;
+            this.waitCount = waitCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        public int getActiveReaders() {
+            return activeReaders;
+        }
+
+        public int getIdleReaders() {
+            return idleReaders;
+        }
+
+        public int getOpenReaders() {
+            return openReaders;
+        }
+
+        public int getMaxReaders() {
+            return maxReaders;
+        }
+
+        public boolean isWriterInUse() {
+            return writerInUse;
+        }
+
+        public int getWriterQueueLength() {
+            return writerQueueLength;
+        }
+
+        public long getWaitCount() {
+            return waitCount;
+        }
+
+        public double getAverageWaitMillis() {
+            return waitCount == 0 ? 0 : totalWaitNanos / 1_000_000.0 / waitCount;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("readers active=%d idle=%d open=%d/%d, writer %s (queued=%d), "
+                            + "acquisitions=%d avgWait=%.3fms maxWait=%.3fms",
+                    activeReaders, idleReaders, openReaders, maxReaders, writerInUse ? "busy" : "free",
+                    writerQueueLength, waitCount, getAverageWaitMillis(), getMaxWaitMillis());
+        }
+    }
+}
@@ -1,17 +1,85 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
-    private static final String URL = "jdbc:sqlite:pfms.db";
-    private static Connection connection;
+    private static ConnectionPool pool;
+    private static WriteQueue writeQueue;
+    private static CategoryDictionary categories;
 
+    private static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            pool = ConnectionPool.fromSystemProperties();
+        }
+        return pool;
+    }
+
+    /**
+     * Borrows the writer connection. Closing it returns it to the pool.
+     */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(URL);
+        return getPool().getWriteConnection();
+    }
+
+    /**
+     * The single-writer queue that commits ledger writes in groups.
+     */
+    public static synchronized WriteQueue getWriteQueue() {
+        if (writeQueue == null) {
+            writeQueue = WriteQueue.fromSystemProperties(getPool());
+        }
+        return writeQueue;
+    }
+
+    /**
+     * Borrows a read-only connection for queries. Closing it returns it to the pool.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getPool().getReadConnection();
+    }
+
+    /**
+     * The category id/name dictionary of the open database.
+     */
+    public static synchronized CategoryDictionary getCategories() {
+        if (categories == null) {
+            categories = new CategoryDictionary();
+        }
+        return categories;
+    }
+
+    /**
+     * Rebuilds the database file so pages freed by large deletes or table rewrites are returned.
+     */
+    public static void vacuum() throws SQLException {
+        getPool().vacuum();
+    }
+
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    public static WriteQueue.WriteQueueStats getWriteQueueStats() {
+        return getWriteQueue().getStats();
+    }
+
+    public static StatementCache.StatementCacheStats getStatementCacheStats() {
+        return StatementCache.getStats();
+    }
+
+    /**
+     * Commits any queued writes and closes every pooled connection. A later call to getConnection opens a fresh pool.
+     */
+    public static synchronized void shutdown() {
+        if (writeQueue != null) {
+            writeQueue.shutdown();
+            writeQueue = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
-        return connection;
+        categories = null;
     }
 }
@@ -1,51 +1,40 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.Statement;
 
 public class DatabaseInitializer {
 
     public static void initializeDatabase() {
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-
-            // Create Users table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS Users (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    username TEXT UNIQUE NOT NULL,
-                    password TEXT NOT NULL
-                );
-            """);
+        initializeDatabase(true);
+    }
 
-            // Create Transactions table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS Transactions (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    userId INTEGER NOT NULL,
-                    amount REAL NOT NULL,
-                    category TEXT NOT NULL,
-                    date TEXT NOT NULL,
-                    type TEXT NOT NULL,
-                    FOREIGN KEY (userId) REFERENCES Users(id)
-                );
-            """);
+    /**
+     * Creates or upgrades the schema. Headless commands pass false so stdout only carries their own output.
+     */
+    public static void initializeDatabase(boolean announce) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
 
-            // Create Budgets table with UNIQUE constraint
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS Budgets (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    userId INTEGER NOT NULL,
-                    category TEXT NOT NULL,
-                    amount REAL NOT NULL,
-                    FOREIGN KEY (userId) REFERENCES Users(id),
-                    UNIQUE (userId, category)
-                );
-            """);
+            // Create or upgrade the schema to the latest version
+            MigrationRunner.migrate(conn, announce ? System.out : System.err);
 
-            System.out.println("Database initialized successfully.");
+            if (announce) {
+                System.out.println("Database initialized successfully (schema version "
+                        + MigrationRunner.getLatestVersion() + ").");
+            }
         } catch (Exception e) {
             System.err.println("Error initializing database: " + e.getMessage());
+            return;
+        }
+
+        if (MigrationRunner.isCompactionRecommended()) {
+            try {
+                long start = System.nanoTime();
+                DatabaseConnection.vacuum();
+                (announce ? System.out : System.err).println(
+                        "Compacted database in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            } catch (Exception e) {
+                System.err.println("Error compacting database: " + e.getMessage());
+            }
         }
     }
 }
@@ -0,0 +1,427 @@
+package database;
+
+import util.DateUtils;
+import util.PasswordHasher;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies schema migrations in order, using PRAGMA user_version to remember
+ * which ones an existing pfms.db has already received.
+ * Each migration runs in its own transaction together with the version bump,
+ * so an interrupted upgrade leaves the file at the last completed version.
+ */
+public class MigrationRunner {
+
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final MigrationStep step;
+        // Rewrites enough of the file that it is worth a VACUUM afterwards to return the freed pages
+        final boolean compactAfter;
+
+        Migration(int version, String description, MigrationStep step) {
+            this(version, description, step, false);
+        }
+
+        Migration(int version, String description, MigrationStep step, boolean compactAfter) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+            this.compactAfter = compactAfter;
+        }
+    }
+
+    public static class MigrationTiming {
+        private final int version;
+        private final String description;
+        private final long elapsedMillis;
+
+        MigrationTiming(int version, String description, long elapsedMillis) {
+            this.version = version;
+            this.description = description;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    private static final int BACKFILL_BATCH_SIZE = 5_000;
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create base tables", MigrationRunner::createBaseTables),
+            new Migration(2, "Add composite indexes on Transactions", MigrationRunner::addTransactionIndexes),
+            new Migration(3, "Add normalized epochDay column to Transactions", MigrationRunner::addEpochDayColumn),
+            new Migration(4, "Move category names into a Categories table", MigrationRunner::normalizeCategories,
+                    true),
+            new Migration(5, "Store amounts as integer cents", MigrationRunner::convertAmountsToCents, true),
+            new Migration(6, "Replace plain-text passwords with salted hashes", MigrationRunner::hashPasswords),
+            new Migration(7, "Index Transactions by type and date for filtered aggregates",
+                    MigrationRunner::addTypeDateIndex),
+            new Migration(8, "Add full-text search over category names", MigrationRunner::addCategorySearch),
+            new Migration(9, "Add monthly rollups maintained by triggers", MonthlyRollup::create),
+            new Migration(10, "Add the registry of archived years", TransactionArchive::createRegistry)
+    );
+
+    private static List<MigrationTiming> lastRunTimings = Collections.emptyList();
+    private static boolean compactionRecommended;
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Timings of the migrations applied by the most recent call to {@link #migrate(Connection)}.
+     * Empty when the database was already up to date.
+     */
+    public static List<MigrationTiming> getLastRunTimings() {
+        return lastRunTimings;
+    }
+
+    /**
+     * True if the most recent call to {@link #migrate(Connection)} applied a migration that rewrote
+     * enough of the file that a VACUUM is worth running. VACUUM cannot run inside the migration
+     * transaction, so the caller runs it afterwards.
+     */
+    public static boolean isCompactionRecommended() {
+        return compactionRecommended;
+    }
+
+    public static void migrate(Connection conn) throws SQLException {
+        migrate(conn, System.out);
+    }
+
+    /**
+     * Same as {@link #migrate(Connection)}, reporting each applied migration to {@code log}.
+     */
+    public static void migrate(Connection conn, PrintStream log) throws SQLException {
+        int currentVersion = getUserVersion(conn);
+        List<MigrationTiming> timings = new ArrayList<>();
+        boolean compact = false;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= currentVersion) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    migration.step.apply(conn);
+                    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                    recordMigration(conn, migration, elapsedMillis);
+                    setUserVersion(conn, migration.version);
+                    conn.commit();
+                    timings.add(new MigrationTiming(migration.version, migration.description, elapsedMillis));
+                    compact |= migration.compactAfter;
+                    log.println("Applied migration " + migration.version + " (" + migration.description
+                            + ") in " + elapsedMillis + " ms.");
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + migration.version + " failed: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+            lastRunTimings = Collections.unmodifiableList(timings);
+            compactionRecommended = compact;
+        }
+    }
+
+    private static int getUserVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void setUserVersion(Connection conn, int version) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA user_version = " + version);
+        }
+    }
+
+    private static void recordMigration(Connection conn, Migration migration, long elapsedMillis) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS SchemaMigrations (
+                    version INTEGER PRIMARY KEY,
+                    description TEXT NOT NULL,
+                    appliedAt TEXT NOT NULL,
+                    elapsedMs INTEGER NOT NULL
+                );
+            """);
+        }
+        String query = "INSERT OR REPLACE INTO SchemaMigrations (version, description, appliedAt, elapsedMs) "
+                + "VALUES (?, ?, datetime('now'), ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.setLong(3, elapsedMillis);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Migration 1: the original schema, kept idempotent for files created before versioning
+    private static void createBaseTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS Users (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    username TEXT UNIQUE NOT NULL,
+                    password TEXT NOT NULL
+                );
+            """);
+
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS Transactions (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    userId INTEGER NOT NULL,
+                    amount REAL NOT NULL,
+                    category TEXT NOT NULL,
+                    date TEXT NOT NULL,
+                    type TEXT NOT NULL,
+                    FOREIGN KEY (userId) REFERENCES Users(id)
+                );
+            """);
+
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS Budgets (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    userId INTEGER NOT NULL,
+                    category TEXT NOT NULL,
+                    amount REAL NOT NULL,
+                    FOREIGN KEY (userId) REFERENCES Users(id),
+                    UNIQUE (userId, category)
+                );
+            """);
+        }
+    }
+
+    // Migration 2: Budgets lookups are already covered by the UNIQUE (userId, category) index
+    private static void addTransactionIndexes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_transactions_user_date ON Transactions (userId, date)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_transactions_user_type_category "
+                    + "ON Transactions (userId, type, category)");
+        }
+    }
+
+    // Migration 3: epochDay holds days since 1970-01-01 and stays NULL for dates that cannot be parsed
+    private static void addEpochDayColumn(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE Transactions ADD COLUMN epochDay INTEGER");
+        }
+
+        String select = "SELECT id, date FROM Transactions";
+        String update = "UPDATE Transactions SET epochDay = ? WHERE id = ?";
+        try (Statement selectStmt = conn.createStatement();
+             ResultSet rs = selectStmt.executeQuery(select);
+             PreparedStatement updateStmt = conn.prepareStatement(update)) {
+            int pending = 0;
+            while (rs.next()) {
+                Integer epochDay = DateUtils.toEpochDay(rs.getString("date"));
+                if (epochDay == null) {
+                    continue;
+                }
+                updateStmt.setInt(1, epochDay);
+                updateStmt.setInt(2, rs.getInt("id"));
+                updateStmt.addBatch();
+                if (++pending == BACKFILL_BATCH_SIZE) {
+                    updateStmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updateStmt.executeBatch();
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_transactions_user_epochday "
+                    + "ON Transactions (userId, epochDay, id)");
+        }
+    }
+
+    // Migration 4: Transactions and Budgets keep a categoryId instead of the name. SQLite cannot
+    // change a column's type in place, so both tables are rebuilt and renamed over the originals.
+    // idx_transactions_user_date is not recreated; every query now ranges over epochDay.
+    private static void normalizeCategories(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE Categories (
+                    id INTEGER PRIMARY KEY,
+                    name TEXT NOT NULL UNIQUE
+                );
+            """);
+            stmt.execute("""
+                INSERT INTO Categories (name)
+                SELECT category FROM Transactions
+                UNION
+                SELECT category FROM Budgets
+            """);
+
+            stmt.execute("""
+                CREATE TABLE Transactions_new (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    userId INTEGER NOT NULL,
+                    amount REAL NOT NULL,
+                    categoryId INTEGER NOT NULL,
+                    date TEXT NOT NULL,
+                    epochDay INTEGER,
+                    type TEXT NOT NULL,
+                    FOREIGN KEY (userId) REFERENCES Users(id),
+                    FOREIGN KEY (categoryId) REFERENCES Categories(id)
+                );
+            """);
+            stmt.execute("""
+                INSERT INTO Transactions_new (id, userId, amount, categoryId, date, epochDay, type)
+                SELECT t.id, t.userId, t.amount, c.id, t.date, t.epochDay, t.type
+                FROM Transactions t JOIN Categories c ON c.name = t.category
+                ORDER BY t.id
+            """);
+            copySequence(stmt, "Transactions");
+            stmt.execute("DROP TABLE Transactions");
+            stmt.execute("ALTER TABLE Transactions_new RENAME TO Transactions");
+            stmt.execute("CREATE INDEX idx_transactions_user_epochday ON Transactions (userId, epochDay, id)");
+            stmt.execute("CREATE INDEX idx_transactions_user_type_category ON Transactions (userId, type, categoryId)");
+
+            stmt.execute("""
+                CREATE TABLE Budgets_new (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    userId INTEGER NOT NULL,
+                    categoryId INTEGER NOT NULL,
+                    amount REAL NOT NULL,
+                    FOREIGN KEY (userId) REFERENCES Users(id),
+                    FOREIGN KEY (categoryId) REFERENCES Categories(id),
+                    UNIQUE (userId, categoryId)
+                );
+            """);
+            stmt.execute("""
+                INSERT INTO Budgets_new (id, userId, categoryId, amount)
+                SELECT b.id, b.userId, c.id, b.amount
+                FROM Budgets b JOIN Categories c ON c.name = b.category
+                ORDER BY b.id
+            """);
+            copySequence(stmt, "Budgets");
+            stmt.execute("DROP TABLE Budgets");
+            stmt.execute("ALTER TABLE Budgets_new RENAME TO Budgets");
+        }
+    }
+
+    // Carries the AUTOINCREMENT high-water mark over to the rebuilt table so deleted ids are not reused
+    private static void copySequence(Statement stmt, String table) throws SQLException {
+        stmt.execute("UPDATE sqlite_sequence SET seq = MAX(seq, COALESCE("
+                + "(SELECT seq FROM sqlite_sequence WHERE name = '" + table + "'), 0)) "
+                + "WHERE name = '" + table + "_new'");
+    }
+
+    // Migration 5: amountCents replaces the REAL amount column in both tables. The REAL values
+    // were entered with at most two decimals, so rounding amount * 100 recovers them exactly.
+    private static void convertAmountsToCents(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : List.of("Transactions", "Budgets")) {
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN amountCents INTEGER NOT NULL DEFAULT 0");
+                stmt.execute("UPDATE " + table + " SET amountCents = CAST(ROUND(amount * 100) AS INTEGER)");
+                stmt.execute("ALTER TABLE " + table + " DROP COLUMN amount");
+            }
+        }
+    }
+
+    // Migration 6: passwords were stored as typed. Each user takes one PBKDF2 run (a fraction of a second).
+    private static void hashPasswords(Connection conn) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, password FROM Users")) {
+            while (rs.next()) {
+                String password = rs.getString("password");
+                if (!PasswordHasher.isHash(password)) {
+                    ids.add(rs.getInt("id"));
+                    hashes.add(PasswordHasher.hash(password));
+                }
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE Users SET password = ? WHERE id = ?")) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setString(1, hashes.get(i));
+                stmt.setInt(2, ids.get(i));
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    // Migration 7: a type filter plus a date range (the dashboard's time window, the budget monitor's
+    // month) now seeks straight to the range. categoryId and amountCents are carried in the index,
+    // so the aggregates never touch the table. It serves every query the (userId, type, categoryId)
+    // index did, which is dropped so inserts still maintain only two indexes.
+    private static void addTypeDateIndex(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP INDEX IF EXISTS idx_transactions_user_type_category");
+            stmt.execute("CREATE INDEX idx_transactions_user_type_epochday "
+                    + "ON Transactions (userId, type, epochDay, categoryId, amountCents)");
+        }
+    }
+
+    // Migration 8: a transaction's description is its category name, stored once in Categories, so
+    // the FTS5 index covers the names rather than repeating them for every row. It is an external
+    // content table kept in sync by triggers. The rows of a matched category are then read newest
+    // first from the new (userId, categoryId, epochDay, id) index, one seek per category.
+    private static void addCategorySearch(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE VIRTUAL TABLE CategorySearch USING fts5(
+                    name,
+                    content = 'Categories',
+                    content_rowid = 'id',
+                    tokenize = 'unicode61 remove_diacritics 2',
+                    prefix = '2 3'
+                )
+            """);
+            stmt.execute("""
+                CREATE TRIGGER categories_search_insert AFTER INSERT ON Categories BEGIN
+                    INSERT INTO CategorySearch (rowid, name) VALUES (new.id, new.name);
+                END
+            """);
+            // CategoryDictionary's upsert rewrites the name with itself; only a real rename reindexes
+            stmt.execute("""
+                CREATE TRIGGER categories_search_update AFTER UPDATE OF name ON Categories
+                WHEN old.name IS NOT new.name BEGIN
+                    INSERT INTO CategorySearch (CategorySearch, rowid, name) VALUES ('delete', old.id, old.name);
+                    INSERT INTO CategorySearch (rowid, name) VALUES (new.id, new.name);
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER categories_search_delete AFTER DELETE ON Categories BEGIN
+                    INSERT INTO CategorySearch (CategorySearch, rowid, name) VALUES ('delete', old.id, old.name);
+                END
+            """);
+            stmt.execute("INSERT INTO CategorySearch (CategorySearch) VALUES ('rebuild')");
+            stmt.execute("CREATE INDEX idx_transactions_user_category_epochday "
+                    + "ON Transactions (userId, categoryId, epochDay, id)");
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * The MonthlyRollup table: one row per (user, type, month, category) with the total and the
+ * number of transactions in it, kept current by triggers on Transactions so summaries and
+ * charts read a few hundred rows however large the ledger grows.
+ *
+ * month is the "YYYY-MM" key the aggregates group by; rows whose date could not be parsed use the
+ * first seven characters of the date text and are kept apart with dated = 0, so date-range
+ * queries can leave them out just as the epochDay conditions on Transactions do.
+ */
+public class MonthlyRollup {
+
+    public static class RebuildResult {
+        private final int rows;
+        private final int staleRows;
+        private final long elapsedMillis;
+
+        RebuildResult(int rows, int staleRows, long elapsedMillis) {
+            this.rows = rows;
+            this.staleRows = staleRows;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Rollup rows that were missing, extra or had a different total or count before the rebuild.
+         */
+        public int getStaleRows() {
+            return staleRows;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    private static final String ROLLUP_COLUMNS = "userId, type, month, categoryId, dated, totalCents, rowCount";
+
+    private MonthlyRollup() {
+    }
+
+    // Same month key as DateUtils.monthKey: from epochDay, or the date text when it could not be parsed
+    private static String monthOf(String row) {
+        return "COALESCE(strftime('%Y-%m', " + row + ".epochDay * 86400, 'unixepoch'), substr(" + row + ".date, 1, 7))";
+    }
+
+    // Matches the rollup row of the given Transactions row (old or new inside a trigger)
+    private static String rowOf(String row) {
+        return "userId = " + row + ".userId AND type = " + row + ".type AND month = " + monthOf(row)
+                + " AND categoryId = " + row + ".categoryId AND dated = (" + row + ".epochDay IS NOT NULL)";
+    }
+
+    private static String addRow(String row) {
+        return """
+            INSERT INTO MonthlyRollup (userId, type, month, categoryId, dated, totalCents, rowCount)
+            VALUES (%1$s.userId, %1$s.type, %2$s, %1$s.categoryId, %1$s.epochDay IS NOT NULL, %1$s.amountCents, 1)
+            ON CONFLICT DO UPDATE SET totalCents = totalCents + excluded.totalCents, rowCount = rowCount + 1;
+        """.formatted(row, monthOf(row));
+    }
+
+    // A bucket is removed with its last transaction rather than left behind as a 0.00 entry
+    private static String removeRow(String row) {
+        return """
+            UPDATE MonthlyRollup SET totalCents = totalCents - %1$s.amountCents, rowCount = rowCount - 1
+            WHERE %2$s;
+            DELETE FROM MonthlyRollup WHERE %2$s AND rowCount <= 0;
+        """.formatted(row, rowOf(row));
+    }
+
+    /**
+     * Creates the table and its triggers and fills it from the existing transactions.
+     */
+    static void create(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE MonthlyRollup (
+                    userId INTEGER NOT NULL,
+                    type TEXT NOT NULL,
+                    month TEXT NOT NULL,
+                    categoryId INTEGER NOT NULL,
+                    dated INTEGER NOT NULL,
+                    totalCents INTEGER NOT NULL,
+                    rowCount INTEGER NOT NULL,
+                    PRIMARY KEY (userId, type, month, categoryId, dated)
+                ) WITHOUT ROWID
+            """);
+            stmt.execute("CREATE TRIGGER transactions_rollup_insert AFTER INSERT ON Transactions BEGIN "
+                    + addRow("new") + " END");
+            stmt.execute("CREATE TRIGGER transactions_rollup_delete AFTER DELETE ON Transactions BEGIN "
+                    + removeRow("old") + " END");
+            stmt.execute("CREATE TRIGGER transactions_rollup_update "
+                    + "AFTER UPDATE OF userId, type, date, epochDay, categoryId, amountCents ON Transactions BEGIN "
+                    + removeRow("old") + addRow("new") + " END");
+        }
+        refill(conn, List.of());
+    }
+
+    /**
+     * Recomputes every rollup row from Transactions and the archived years in one transaction on
+     * the writer connection, e.g. after rows were changed by a tool that bypassed the triggers.
+     * Readers keep seeing the old rows until it commits.
+     */
+    public static RebuildResult rebuild() throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            List<String> archiveTables = TransactionArchive.attachAll(conn);
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                int stale = countStale(conn, archiveTables);
+                int rows = refill(conn, archiveTables);
+                conn.commit();
+                return new RebuildResult(rows, stale, (System.nanoTime() - start) / 1_000_000);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Adds the rows of main.Transactions dated from {@code fromEpochDay} to {@code toEpochDay} that have been
+     * copied into {@code archiveTable} to the rollup once more, so the DELETE that removes them from the main
+     * file leaves their totals in place. Runs in the caller's transaction.
+     */
+    static void keep(Connection conn, String archiveTable, int fromEpochDay, int toEpochDay) throws SQLException {
+        String query = "INSERT INTO MonthlyRollup (" + ROLLUP_COLUMNS + ") "
+                + grouped("main.Transactions t WHERE epochDay BETWEEN ? AND ? AND id IN (SELECT id FROM "
+                        + archiveTable + ")")
+                + " ON CONFLICT DO UPDATE SET totalCents = totalCents + excluded.totalCents, "
+                + "rowCount = rowCount + excluded.rowCount";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, fromEpochDay);
+            stmt.setInt(2, toEpochDay);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * A query for one user's rollup rows computed from Transactions and the given archive tables
+     * instead of read from MonthlyRollup, with the same columns. Bind the user id as its only parameter.
+     */
+    public static String computedFor(List<String> archiveTables) {
+        return grouped(allTransactions(archiveTables) + " WHERE t.userId = ?");
+    }
+
+    // The rollup rows computed from the given FROM clause, whose table must be aliased t
+    private static String grouped(String from) {
+        return "SELECT userId, type, " + monthOf("t") + " AS month, categoryId, epochDay IS NOT NULL AS dated, "
+                + "SUM(amountCents) AS totalCents, COUNT(*) AS rowCount FROM " + from
+                + " GROUP BY userId, type, month, categoryId, dated";
+    }
+
+    // Every transaction, archived years included; callers attach the archives outside their transaction
+    private static String allTransactions(List<String> archiveTables) {
+        if (archiveTables.isEmpty()) {
+            return "main.Transactions t";
+        }
+        StringBuilder union = new StringBuilder("(SELECT userId, type, epochDay, date, categoryId, amountCents "
+                + "FROM main.Transactions");
+        for (String table : archiveTables) {
+            union.append(" UNION ALL SELECT userId, type, epochDay, date, categoryId, amountCents FROM ").append(table);
+        }
+        return union.append(") t").toString();
+    }
+
+    private static int refill(Connection conn, List<String> archiveTables) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM MonthlyRollup");
+            return stmt.executeUpdate("INSERT INTO MonthlyRollup (" + ROLLUP_COLUMNS + ") "
+                    + grouped(allTransactions(archiveTables)));
+        }
+    }
+
+    // Rows present on only one side of the comparison, counting a changed row on both sides once
+    private static int countStale(Connection conn, List<String> archiveTables) throws SQLException {
+        String columns = ROLLUP_COLUMNS;
+        String query = "WITH actual AS (" + grouped(allTransactions(archiveTables)) + "), "
+                + "stored AS (SELECT " + columns + " FROM MonthlyRollup), "
+                + "differing AS (SELECT * FROM (SELECT * FROM stored EXCEPT SELECT * FROM actual) "
+                + "UNION ALL SELECT * FROM (SELECT * FROM actual EXCEPT SELECT * FROM stored)) "
+                + "SELECT COUNT(DISTINCT userId || ' ' || type || ' ' || month || ' ' || categoryId || ' ' || dated) "
+                + "FROM differing";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package database;
+
+import util.Metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs every pooled statement that takes longer than a threshold: when it ran, how long it took,
+ * its SQL and the types of its parameters (never their values, which may be personal data).
+ * A query is timed from its execute call until its statement is closed or executed again, so
+ * the time spent stepping through the result set is included.
+ *
+ * Configured with pfms.db.slowQueryMs (default 100; negative turns it off) and
+ * pfms.db.slowQueryLog (a file to append to; standard error by default). The threshold and the
+ * most recent entries are also available over JMX as pfms:type=SlowQueryLog.
+ */
+public class SlowQueryLog implements SlowQueryLogMBean {
+
+    private static final int RECENT_ENTRIES = 50;
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+
+    private volatile long thresholdNanos;
+    private final AtomicLong slowQueries = new AtomicLong();
+    private final Deque<String> recent = new ArrayDeque<>();
+    private final PrintStream out;
+
+    private SlowQueryLog() {
+        setThresholdMillis(Long.getLong("pfms.db.slowQueryMs", 100L));
+        String file = System.getProperty("pfms.db.slowQueryLog");
+        PrintStream stream = System.err;
+        if (file != null) {
+            try {
+                stream = new PrintStream(Files.newOutputStream(Paths.get(file),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND), true, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("Error opening slow query log " + file + ": " + e.getMessage());
+            }
+        }
+        out = stream;
+        Metrics.register("pfms:type=SlowQueryLog", this);
+    }
+
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    static boolean isEnabled() {
+        return INSTANCE.thresholdNanos >= 0;
+    }
+
+    /**
+     * Called for every statement that finished; only the ones at or over the threshold are logged.
+     */
+    static void record(String sql, String parameters, long nanos) {
+        SlowQueryLog log = INSTANCE;
+        long threshold = log.thresholdNanos;
+        if (threshold < 0 || nanos < threshold) {
+            return;
+        }
+        log.slowQueries.incrementAndGet();
+        String entry = String.format("%s slow query %.1f ms: %s %s", LocalDateTime.now(), nanos / 1e6,
+                sql.strip().replaceAll("\\s+", " "), parameters);
+        synchronized (log.recent) {
+            if (log.recent.size() == RECENT_ENTRIES) {
+                log.recent.removeFirst();
+            }
+            log.recent.addLast(entry);
+        }
+        log.out.println(entry);
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return thresholdNanos < 0 ? -1 : thresholdNanos / 1_000_000;
+    }
+
+    @Override
+    public void setThresholdMillis(long thresholdMillis) {
+        thresholdNanos = thresholdMillis < 0 ? -1 : thresholdMillis * 1_000_000;
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueries.get();
+    }
+
+    @Override
+    public String[] getRecentSlowQueries() {
+        synchronized (recent) {
+            return recent.toArray(new String[0]);
+        }
+    }
+}
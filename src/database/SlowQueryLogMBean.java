@@ -0,0 +1,18 @@
+package database;
+
+/**
+ * JMX view of the slow-query log; the threshold can be changed while the application runs.
+ */
+public interface SlowQueryLogMBean {
+
+    long getThresholdMillis();
+
+    /**
+     * A negative threshold turns the log off; 0 logs every statement.
+     */
+    void setThresholdMillis(long thresholdMillis);
+
+    long getSlowQueryCount();
+
+    String[] getRecentSlowQueries();
+}
@@ -0,0 +1,279 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps compiled PreparedStatements for one physical connection, keyed by SQL
+ * text, with least-recently-used eviction once the capacity is reached.
+ *
+ * Callers keep using try-with-resources: closing a statement obtained from the
+ * cache closes its result set and clears its parameters, then returns it to the
+ * cache so the next call with the same SQL skips SQLite's parse and plan step.
+ */
+public class StatementCache {
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private final Connection connection;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                evictions.incrementAndGet();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    synchronized PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+            hits.incrementAndGet();
+            return cached.borrow();
+        }
+        misses.incrementAndGet();
+        PreparedStatement statement = connection.prepareStatement(sql);
+        if (cached != null && cached.inUse) {
+            // The same SQL is already open on this connection; hand out an uncached statement
+            CachedStatement uncached = new CachedStatement(sql, statement);
+            uncached.evicted = true;
+            return uncached.borrow();
+        }
+        // Borrowed before it is cached, so a capacity of 0 evicts it on release rather than closing it now
+        cached = new CachedStatement(sql, statement);
+        PreparedStatement borrowed = cached.borrow();
+        statements.put(sql, cached);
+        return borrowed;
+    }
+
+    synchronized void closeAll() {
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            cached.evict();
+        }
+    }
+
+    public static StatementCacheStats getStats() {
+        return new StatementCacheStats(hits.get(), misses.get(), evictions.get());
+    }
+
+    private class CachedStatement {
+        final String sql;
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        PreparedStatement borrow() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new BorrowHandler(this));
+        }
+
+        void release(ResultSet openResultSet) {
+            synchronized (StatementCache.this) {
+                try {
+                    if (openResultSet != null) {
+                        openResultSet.close();
+                    }
+                    if (!statement.isClosed()) {
+                        statement.clearParameters();
+                        statement.clearBatch();
+                    }
+                } catch (SQLException e) {
+                    evicted = true;
+                    statements.remove(findKey());
+                }
+                inUse = false;
+                if (evicted) {
+                    closeStatement();
+                }
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeStatement();
+            }
+        }
+
+        private String findKey() {
+            for (Map.Entry<String, CachedStatement> entry : statements.entrySet()) {
+                if (entry.getValue() == this) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+
+        private void closeStatement() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hands calls through to the cached statement and times each execution for the slow-query log.
+     */
+    private static class BorrowHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private ResultSet lastResultSet;
+        private boolean released;
+        private long executeStart; // 0 when no execution is being timed
+        private String[] parameterTypes = new String[0];
+        private int batchSize;
+
+        BorrowHandler(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        finishExecution();
+                        cached.release(lastResultSet);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || cached.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.statement + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Statement has already been closed");
+            }
+            String name = method.getName();
+            boolean execute = name.startsWith("execute");
+            if (execute) {
+                finishExecution();
+                executeStart = System.nanoTime();
+            } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                recordParameter((Integer) args[0], name.substring(3));
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+            }
+            try {
+                Object result = method.invoke(cached.statement, args);
+                if (result instanceof ResultSet) {
+                    lastResultSet = (ResultSet) result;
+                } else if (execute) {
+                    finishExecution(); // an update is done when it returns; a query when its rows have been read
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                finishExecution();
+                throw e.getCause();
+            }
+        }
+
+        private void recordParameter(int index, String type) {
+            if (index < 1 || index > 999) {
+                return;
+            }
+            if (index > parameterTypes.length) {
+                parameterTypes = Arrays.copyOf(parameterTypes, index);
+            }
+            parameterTypes[index - 1] = type.equals("String") ? "text" : type.toLowerCase();
+        }
+
+        private void finishExecution() {
+            if (executeStart == 0) {
+                return;
+            }
+            long nanos = System.nanoTime() - executeStart;
+            int batch = batchSize;
+            executeStart = 0;
+            batchSize = 0;
+            if (SlowQueryLog.isEnabled()) {
+                SlowQueryLog.record(cached.sql, parameterShape(batch), nanos);
+            }
+        }
+
+        // e.g. "(int, long, text)", or "(int, text) x 500" for a batch; unbound parameters show as ?
+        private String parameterShape(int batch) {
+            StringBuilder shape = new StringBuilder("(");
+            for (int i = 0; i < parameterTypes.length; i++) {
+                shape.append(i == 0 ? "" : ", ").append(parameterTypes[i] == null ? "?" : parameterTypes[i]);
+            }
+            shape.append(')');
+            return batch > 0 ? shape + " x " + batch : shape.toString();
+        }
+    }
+
+    public static class StatementCacheStats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        StatementCacheStats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("statement cache hits=%d misses=%d evictions=%d hitRatio=%.1f%%",
+                    hits, misses, evictions, getHitRatio() * 100);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package database;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the transactions of old years out of pfms.db into one SQLite file per year
+ * (pfms-archive-2019.db and so on, next to the main file), so the page cache, VACUUM
+ * and backups of the main file only pay for recent years.
+ *
+ * The Archives table in the main file lists the archived years; a year's file is
+ * attached to a connection (as archive_2019) the first time a query reaches into it.
+ * Archived rows stay in MonthlyRollup, so summaries and charts never need the files.
+ * A query over every year attaches them all, so at most ConnectionPool.MAX_ATTACHED
+ * years can be archived.
+ * Archived years are read-only: edits and deletes only reach rows in the main file.
+ */
+public class TransactionArchive {
+
+    public static class ArchiveResult {
+        private final Map<Integer, Integer> rowsByYear;
+        private final long elapsedMillis;
+
+        ArchiveResult(Map<Integer, Integer> rowsByYear, long elapsedMillis) {
+            this.rowsByYear = rowsByYear;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Rows moved per year, oldest year first. Empty when nothing was old enough.
+         */
+        public Map<Integer, Integer> getRowsByYear() {
+            return rowsByYear;
+        }
+
+        public int getRows() {
+            return rowsByYear.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    private static final String COLUMNS = "id, userId, amountCents, categoryId, date, epochDay, type";
+
+    private TransactionArchive() {
+    }
+
+    // Migration 10
+    static void createRegistry(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE Archives (
+                    year INTEGER PRIMARY KEY,
+                    file TEXT NOT NULL,
+                    rowCount INTEGER NOT NULL,
+                    archivedAt TEXT NOT NULL
+                )
+            """);
+        }
+    }
+
+    /**
+     * The default horizon: pfms.archive.years (default 2) full years before the current one stay in the main file.
+     */
+    public static int defaultHorizonYears() {
+        return Integer.getInteger("pfms.archive.years", 2);
+    }
+
+    /**
+     * The archived years, oldest first.
+     */
+    public static List<Integer> archivedYears(Connection conn) throws SQLException {
+        List<Integer> years = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT year FROM Archives ORDER BY year");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                years.add(rs.getInt(1));
+            }
+        }
+        return years;
+    }
+
+    /**
+     * Attaches the archive of an archived year to the connection unless it already is, and returns
+     * its Transactions table (e.g. archive_2019.Transactions) for use in a query. An attached file
+     * stays attached for the life of the pooled connection.
+     */
+    public static String attach(Connection conn, int year) throws SQLException {
+        String schema = schemaOf(year);
+        if (!isAttached(conn, schema)) {
+            Path file = fileOf(year);
+            if (!Files.exists(file)) {
+                throw new SQLException("Archive of " + year + " is missing: " + file);
+            }
+            attach(conn, file, schema);
+        }
+        return schema + ".Transactions";
+    }
+
+    /**
+     * Attaches every archived year and returns their Transactions tables, oldest year first.
+     */
+    public static List<String> attachAll(Connection conn) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        for (int year : archivedYears(conn)) {
+            tables.add(attach(conn, year));
+        }
+        return tables;
+    }
+
+    /**
+     * Moves every transaction dated before January 1 of the year {@code horizonYears} before the
+     * current one into its year's archive, on the writer connection. A transaction across the main
+     * file and an archive is not atomic while the main file is in WAL mode, so each year is two:
+     * the rows are copied into the archive and that is committed, then the copied rows are deleted
+     * from the main file, their totals kept in MonthlyRollup and the year registered. A crash
+     * between the two leaves the rows in both files, and running the job again finishes the move,
+     * also when some of them were edited or re-dated in between.
+     * Until the second commit, rows added to a year that was already archived are read twice.
+     */
+    public static ArchiveResult archive(int horizonYears) throws SQLException {
+        long start = System.nanoTime();
+        int firstHotYear = LocalDate.now().getYear() - horizonYears;
+        Map<Integer, Integer> rowsByYear = new LinkedHashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            List<Integer> years = yearsBefore(conn, firstHotYear);
+            List<Integer> archived = archivedYears(conn);
+            long newYears = years.stream().filter(year -> !archived.contains(year)).count();
+            if (archived.size() + newYears > ConnectionPool.MAX_ATTACHED) {
+                throw new SQLException("Cannot archive " + newYears + " more years: " + archived.size()
+                        + " are archived already and a connection can attach at most "
+                        + ConnectionPool.MAX_ATTACHED + " archive files");
+            }
+            for (int year : years) {
+                rowsByYear.put(year, moveYear(conn, year));
+            }
+        }
+        return new ArchiveResult(rowsByYear, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static List<Integer> yearsBefore(Connection conn, int firstHotYear) throws SQLException {
+        List<Integer> years = new ArrayList<>();
+        String query = """
+            SELECT DISTINCT CAST(strftime('%Y', epochDay * 86400, 'unixepoch') AS INTEGER) AS year
+            FROM Transactions
+            WHERE epochDay < ?
+            ORDER BY year
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setLong(1, LocalDate.of(firstHotYear, 1, 1).toEpochDay());
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                years.add(rs.getInt(1));
+            }
+        }
+        return years;
+    }
+
+    private static int moveYear(Connection conn, int year) throws SQLException {
+        String schema = schemaOf(year);
+        // ATTACH cannot run inside a transaction, and creates the file if it does not exist yet
+        if (!isAttached(conn, schema)) {
+            attach(conn, fileOf(year), schema);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS %s.Transactions (
+                    id INTEGER PRIMARY KEY,
+                    userId INTEGER NOT NULL,
+                    amountCents INTEGER NOT NULL,
+                    categoryId INTEGER NOT NULL,
+                    date TEXT NOT NULL,
+                    epochDay INTEGER,
+                    type TEXT NOT NULL
+                )
+            """.formatted(schema));
+            // The same orderings the main file is read in: by date, and by category and date for search
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + schema + ".idx_transactions_user_epochday "
+                    + "ON Transactions (userId, epochDay, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + schema + ".idx_transactions_user_category_epochday "
+                    + "ON Transactions (userId, categoryId, epochDay, id)");
+            // The copy must be on disk before the main file forgets the rows
+            stmt.execute("PRAGMA " + schema + ".synchronous = FULL");
+        }
+        String table = schema + ".Transactions";
+        int fromDay = (int) LocalDate.of(year, 1, 1).toEpochDay();
+        int toDay = (int) LocalDate.of(year, 12, 31).toEpochDay();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            // A row still in the main file is the current version, also over a copy left by an earlier crash.
+            // A copy whose row has since been re-dated out of the year is dropped, or it would be read twice.
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + table + " WHERE EXISTS ("
+                    + "SELECT 1 FROM main.Transactions m WHERE m.id = " + table + ".id "
+                    + "AND (m.epochDay IS NULL OR m.epochDay NOT BETWEEN ? AND ?))")) {
+                stmt.setInt(1, fromDay);
+                stmt.setInt(2, toDay);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT OR REPLACE INTO " + table + " ("
+                    + COLUMNS + ") SELECT " + COLUMNS + " FROM main.Transactions WHERE epochDay BETWEEN ? AND ?")) {
+                stmt.setInt(1, fromDay);
+                stmt.setInt(2, toDay);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+
+            MonthlyRollup.keep(conn, table, fromDay, toDay);
+            int moved;
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM main.Transactions "
+                    + "WHERE epochDay BETWEEN ? AND ? AND id IN (SELECT id FROM " + table + ")")) {
+                stmt.setInt(1, fromDay);
+                stmt.setInt(2, toDay);
+                moved = stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("""
+                INSERT INTO Archives (year, file, rowCount, archivedAt) VALUES (?, ?, ?, datetime('now'))
+                ON CONFLICT (year) DO UPDATE SET rowCount = rowCount + excluded.rowCount, archivedAt = excluded.archivedAt
+            """)) {
+                stmt.setInt(1, year);
+                stmt.setString(2, fileOf(year).getFileName().toString());
+                stmt.setInt(3, moved);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+            return moved;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean isAttached(Connection conn, String schema) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                if (rs.getString("name").equals(schema)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void attach(Connection conn, Path file, String schema) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("ATTACH DATABASE ? AS " + schema)) {
+            stmt.setString(1, file.toString());
+            stmt.execute();
+        }
+    }
+
+    private static String schemaOf(int year) {
+        return "archive_" + year;
+    }
+
+    // pfms.db -> pfms-archive-2019.db in the same directory
+    private static Path fileOf(int year) {
+        Path main = Paths.get(System.getProperty("pfms.db.path", "pfms.db")).toAbsolutePath();
+        String name = main.getFileName().toString();
+        String stem = name.endsWith(".db") ? name.substring(0, name.length() - 3) : name;
+        return main.resolveSibling(stem + "-archive-" + year + ".db");
+    }
+}
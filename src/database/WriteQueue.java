@@ -0,0 +1,299 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs writes on one dedicated thread and commits them in groups.
+ *
+ * Commands are queued from any thread. The writer thread takes a group of them, runs each
+ * inside one transaction on the writer connection under its own savepoint (so a failing
+ * command is rolled back alone) and commits once for the whole group. Under load many
+ * commands share one commit instead of paying for their own, and callers never see
+ * SQLITE_BUSY from each other.
+ *
+ * A group closes when it holds maxGroupSize commands or maxDelay has passed since its first
+ * command. With the default delay of 0 a group is whatever was queued while the previous one
+ * committed, so a lone write is never held back. Futures complete after the commit, on a
+ * separate callback thread, so code chained onto them cannot stall the writer.
+ */
+public class WriteQueue {
+
+    /**
+     * One write, run inside the group's transaction. It must not commit, roll back or change
+     * auto-commit, and must close any ResultSet it opens (e.g. from RETURNING).
+     */
+    public interface Command<T> {
+        T execute(Connection conn) throws SQLException;
+    }
+
+    private static class Pending<T> {
+        final Command<T> command;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Throwable error;
+
+        Pending(Command<T> command) {
+            this.command = command;
+        }
+
+        void run(Connection conn) throws SQLException {
+            result = command.execute(conn);
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Pending<?>> queue;
+    private final int maxGroupSize;
+    private final long maxDelayNanos;
+    private final Thread writer;
+    private final ExecutorService callbacks;
+    private volatile boolean stopping;
+
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong failedCommands = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+
+    public WriteQueue(ConnectionPool pool, int capacity, int maxGroupSize, long maxDelayMicros) {
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxGroupSize = maxGroupSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.callbacks = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pfms-writer-callbacks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::runWriter, "pfms-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Creates a queue configured from system properties: pfms.db.writeQueueCapacity,
+     * pfms.db.groupCommitMax (commands per commit) and pfms.db.groupCommitDelayMicros.
+     */
+    static WriteQueue fromSystemProperties(ConnectionPool pool) {
+        return new WriteQueue(pool,
+                Integer.getInteger("pfms.db.writeQueueCapacity", 10_000),
+                Integer.getInteger("pfms.db.groupCommitMax", 256),
+                Long.getLong("pfms.db.groupCommitDelayMicros", 0L));
+    }
+
+    /**
+     * Queues a command; the future completes once the group it ran in has committed.
+     * Blocks while the queue is full.
+     */
+    public <T> CompletableFuture<T> submit(Command<T> command) {
+        Pending<T> pending = new Pending<>(command);
+        if (stopping) {
+            pending.future.completeExceptionally(new SQLException("Write queue has been shut down"));
+            return pending.future;
+        }
+        if (Thread.currentThread() == writer) {
+            // Waiting on the writer from the writer would never finish
+            pending.future.completeExceptionally(new SQLException("Writes cannot be queued from the writer thread"));
+            return pending.future;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(new SQLException("Interrupted while queueing a write", e));
+        }
+        return pending.future;
+    }
+
+    /**
+     * Queues a command and waits until it has been committed.
+     */
+    public <T> T execute(Command<T> command) throws SQLException {
+        try {
+            return submit(command).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Commits everything already queued, then stops the writer thread.
+     */
+    public void shutdown() {
+        stopping = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything queued after the writer's last look is failed rather than left waiting
+        List<Pending<?>> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for (Pending<?> pending : abandoned) {
+            pending.error = new SQLException("Write queue has been shut down");
+            pending.complete();
+        }
+        callbacks.shutdown();
+    }
+
+    public WriteQueueStats getStats() {
+        return new WriteQueueStats(groups.get(), commands.get(), failedCommands.get(), queue.size(),
+                commitNanos.get());
+    }
+
+    private void runWriter() {
+        List<Pending<?>> group = new ArrayList<>(maxGroupSize);
+        while (true) {
+            try {
+                Pending<?> first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                group.add(first);
+                collect(group);
+            } catch (InterruptedException e) {
+                if (group.isEmpty()) {
+                    continue;
+                }
+            }
+            commit(group);
+            group = new ArrayList<>(maxGroupSize);
+        }
+    }
+
+    // Adds queued commands until the group is full or its delay has passed
+    private void collect(List<Pending<?>> group) throws InterruptedException {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (group.size() < maxGroupSize) {
+            if (queue.drainTo(group, maxGroupSize - group.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Pending<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    private void commit(List<Pending<?>> group) {
+        long start = System.nanoTime();
+        try (Connection conn = pool.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            // Prepared rather than executed as text so the writer's statement cache keeps them parsed
+            try (PreparedStatement savepoint = conn.prepareStatement("SAVEPOINT command");
+                 PreparedStatement release = conn.prepareStatement("RELEASE command");
+                 PreparedStatement rollback = conn.prepareStatement("ROLLBACK TO command")) {
+                for (Pending<?> pending : group) {
+                    savepoint.execute();
+                    try {
+                        pending.run(conn);
+                    } catch (SQLException | RuntimeException e) {
+                        rollback.execute();
+                        pending.error = e;
+                    }
+                    release.execute();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            SQLException failure = new SQLException("Group commit failed: " + e.getMessage(), e);
+            for (Pending<?> pending : group) {
+                if (pending.error == null) {
+                    pending.error = failure;
+                }
+            }
+        }
+        commitNanos.addAndGet(System.nanoTime() - start);
+        groups.incrementAndGet();
+        for (Pending<?> pending : group) {
+            commands.incrementAndGet();
+            if (pending.error != null) {
+                failedCommands.incrementAndGet();
+            }
+        }
+        callbacks.execute(() -> group.forEach(Pending::complete));
+    }
+
+    public static class WriteQueueStats {
+        private final long groups;
+        private final long commands;
+        private final long failedCommands;
+        private final int queued;
+        private final long commitNanos;
+
+        WriteQueueStats(long groups, long commands, long failedCommands, int queued, long commitNanos) {
+            this.groups = groups;
+            this.commands = commands;
+            this.failedCommands = failedCommands;
+            this.queued = queued;
+            this.commitNanos = commitNanos;
+        }
+
+        public long getGroups() {
+            return groups;
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        public long getFailedCommands() {
+            return failedCommands;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public double getAverageGroupSize() {
+            return groups == 0 ? 0 : (double) commands / groups;
+        }
+
+        public double getAverageGroupMillis() {
+            return groups == 0 ? 0 : commitNanos / 1_000_000.0 / groups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("groups=%d commands=%d failed=%d queued=%d avgGroup=%.1f avgCommit=%.3fms",
+                    groups, commands, failedCommands, queued, getAverageGroupSize(), getAverageGroupMillis());
+        }
+    }
+}
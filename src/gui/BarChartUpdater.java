@@ -0,0 +1,68 @@
+package gui;
+
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import models.Money;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Keeps a BarChart of monthly totals in step with the data by changing only what differs.
+ *
+ * The series are created once. A month that is still shown keeps its Data and bar node and only
+ * has its value changed; months that appear or disappear are inserted or removed in place.
+ * Every series gets a bar for every month (zero where it has none), so the category axis keeps
+ * the months in order. Animation is turned off: JavaFX can reject a bar for a month that is
+ * added back while its removal is still animating. Must be used on the FX Application Thread.
+ */
+class BarChartUpdater {
+
+    private final Map<String, XYChart.Series<String, Number>> series = new LinkedHashMap<>();
+
+    BarChartUpdater(BarChart<String, Number> chart, List<String> seriesNames) {
+        chart.setAnimated(false);
+        for (String name : seriesNames) {
+            XYChart.Series<String, Number> s = new XYChart.Series<>();
+            s.setName(name);
+            series.put(name, s);
+        }
+        chart.getData().setAll(series.values());
+    }
+
+    /**
+     * Shows the given totals, keyed by series name and then by month (YYYY-MM).
+     */
+    void update(Map<String, Map<String, Money>> totalsBySeries) {
+        TreeSet<String> months = new TreeSet<>();
+        totalsBySeries.values().forEach(totals -> months.addAll(totals.keySet()));
+
+        series.forEach((name, s) -> {
+            Map<String, Money> totals = totalsBySeries.getOrDefault(name, Map.of());
+            Map<String, XYChart.Data<String, Number>> existing = new HashMap<>();
+            s.getData().removeIf(bar -> {
+                if (!months.contains(bar.getXValue())) {
+                    return true;
+                }
+                existing.put(bar.getXValue(), bar);
+                return false;
+            });
+
+            // Both the months and the remaining bars are in ascending order, so one pass places new bars
+            int index = 0;
+            for (String month : months) {
+                double value = totals.getOrDefault(month, Money.ZERO).toDouble();
+                XYChart.Data<String, Number> bar = existing.get(month);
+                if (bar == null) {
+                    s.getData().add(index, new XYChart.Data<>(month, value));
+                } else if (bar.getYValue().doubleValue() != value) {
+                    bar.setYValue(value);
+                }
+                index++;
+            }
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package gui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import util.Metrics;
+import util.OperationStats;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * Collects "this view is stale" notifications and redraws each stale view at
+ * most once per JavaFX pulse.
+ *
+ * Writes only mark views dirty; a burst of edits therefore costs one redraw
+ * per view instead of one per edit. invalidate() may be called from any
+ * thread, refreshers always run on the FX Application Thread.
+ */
+class DashboardInvalidator {
+
+    enum View {
+        TABLE("refreshTransactions"),
+        PIE("refreshPieChart"),
+        BAR("refreshBarChart"),
+        SUMMARY("updateSummary"),
+        BUDGETS("refreshBudgetTable");
+
+        // Time each redraw holds the FX Application Thread, as pfms:type=Dashboard,name=<refresher>
+        private final OperationStats stats;
+
+        View(String refresher) {
+            this.stats = Metrics.operation("Dashboard", refresher);
+        }
+    }
+
+    private final Map<View, Runnable> refreshers = new EnumMap<>(View.class);
+    private final EnumSet<View> dirty = EnumSet.noneOf(View.class);
+    private boolean flushScheduled;
+
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            flush();
+        }
+    };
+
+    /**
+     * Registers how to redraw a view. Must be called on the FX Application Thread.
+     */
+    void register(View view, Runnable refresher) {
+        refreshers.put(view, refresher);
+    }
+
+    void invalidate(View... views) {
+        synchronized (dirty) {
+            for (View view : views) {
+                dirty.add(view);
+            }
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        if (Platform.isFxApplicationThread()) {
+            pulse.start();
+        } else {
+            Platform.runLater(pulse::start);
+        }
+    }
+
+    private void flush() {
+        EnumSet<View> stale;
+        synchronized (dirty) {
+            stale = EnumSet.copyOf(dirty);
+            dirty.clear();
+            flushScheduled = false;
+        }
+        for (View view : stale) {
+            Runnable refresher = refreshers.get(view);
+            if (refresher != null) {
+                view.stats.run(refresher);
+            }
+        }
+    }
+}
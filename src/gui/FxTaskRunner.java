@@ -0,0 +1,100 @@
+package gui;
+
+import javafx.application.Platform;
+import managers.AsyncService;
+import util.Metrics;
+import util.OperationStats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs database work in the background and hands the result back on the
+ * FX Application Thread.
+ *
+ * Keyed tasks are used for refreshes: starting a task with the same key
+ * cancels the previous one if it has not started yet, and a result that
+ * arrives after a newer task was started is discarded. Must be called
+ * from the FX Application Thread.
+ */
+class FxTaskRunner {
+
+    private final Map<String, CompletableFuture<?>> latestByKey = new HashMap<>();
+    private final Consumer<Throwable> errorHandler;
+
+    FxTaskRunner(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Runs a refresh, superseding any in-flight refresh with the same key. The time from here until
+     * the result has been applied is recorded as pfms:type=DashboardRefresh,name=<key>.
+     */
+    <T> void refresh(String key, Supplier<T> work, Consumer<T> onResult) {
+        cancel(key);
+        long start = System.nanoTime();
+        CompletableFuture<T> future = AsyncService.supply(work);
+        latestByKey.put(key, future);
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (latestByKey.get(key) != future) {
+                return; // a newer refresh has been started
+            }
+            latestByKey.remove(key);
+            deliver(result, error, onResult);
+            OperationStats stats = Metrics.operation("DashboardRefresh", key);
+            if (error == null) {
+                stats.record(start, 0);
+            } else {
+                stats.recordError(start);
+            }
+        }));
+    }
+
+    /**
+     * Drops any in-flight refresh with this key, e.g. before drawing the view from memory, so a late
+     * result cannot overwrite it.
+     */
+    void cancel(String key) {
+        CompletableFuture<?> previous = latestByKey.remove(key);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    /**
+     * Runs a task that is never superseded, such as a write.
+     */
+    <T> void submit(Supplier<T> work, Consumer<T> onResult) {
+        submit(work, onResult, () -> { });
+    }
+
+    /**
+     * Same as {@link #submit(Supplier, Consumer)}, then runs {@code always} whether the work succeeded
+     * or failed, e.g. to re-enable the button that started it.
+     */
+    <T> void submit(Supplier<T> work, Consumer<T> onResult, Runnable always) {
+        AsyncService.supply(work).whenComplete((result, error) -> Platform.runLater(() -> {
+            try {
+                deliver(result, error, onResult);
+            } finally {
+                always.run();
+            }
+        }));
+    }
+
+    private <T> void deliver(T result, Throwable error, Consumer<T> onResult) {
+        if (error == null) {
+            onResult.accept(result);
+            return;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!(cause instanceof CancellationException)) {
+            errorHandler.accept(cause);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package gui;
 
+import database.DatabaseConnection;
 import database.DatabaseInitializer;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -10,20 +13,36 @@ import javafx.scene.chart.PieChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import managers.AsyncService;
 import managers.BudgetManager;
+import managers.BudgetMonitor;
+import managers.LedgerSummaryCache;
+import managers.SessionLoader;
+import managers.TransactionExporter;
+import managers.TransactionImporter;
+import managers.TransactionListener;
 import managers.TransactionManager;
 import managers.UserManager;
+import models.BudgetAlert;
+import models.Money;
+import models.SessionSnapshot;
 import models.Transaction;
+import models.TransactionFilter;
+import models.UserProfile;
+import util.DateUtils;
+import util.Metrics;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart;
-import javafx.scene.control.Tooltip;
-import java.util.stream.Collectors;
-
 
+import java.io.File;
+import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.Set;
@@ -32,21 +51,71 @@ import java.util.Set;
 
 public class PFMSApp extends Application {
 
+    private static final String ARCHIVED_MESSAGE =
+            "This transaction is in an archived year and can no longer be edited or deleted.";
+
     private final UserManager userManager = new UserManager();
     private final TransactionManager transactionManager = new TransactionManager();
     private final BudgetManager budgetManager = new BudgetManager();
+    private final LedgerSummaryCache summaryCache = new LedgerSummaryCache(transactionManager);
+    private final BudgetMonitor budgetMonitor = new BudgetMonitor(transactionManager, budgetManager);
+    private final SessionLoader sessionLoader =
+            new SessionLoader(transactionManager, budgetManager, summaryCache, budgetMonitor);
 
     private int loggedInUserId = -1;
 
-    private ObservableList<Transaction> transactions = FXCollections.observableArrayList();
+    // Runs every database call off the FX Application Thread
+    private final FxTaskRunner tasks = new FxTaskRunner(error -> showAlert("Database error: " + error.getMessage()));
+
+    // Writes mark views stale; stale views are redrawn once per pulse
+    private final DashboardInvalidator dashboardViews = new DashboardInvalidator();
+
+    private PagedTransactionList transactions = new PagedTransactionList(transactionManager, tasks);
     private TableView<Transaction> transactionTable;
     private PieChart pieChart;
+    private PieChartUpdater pieChartUpdater;
     private Label summaryLabel;
 
+    // Period the table, charts and summary are limited to; ALL reads the in-memory summary cache
+    private TransactionFilter window = TransactionFilter.ALL;
+
+    // Words typed in the search box once typing pauses; empty shows the paged ledger instead of matches
+    private static final int SEARCH_RESULTS = 200;
+    private static final Duration SEARCH_DELAY = Duration.millis(250);
+    private String searchText = "";
+    private Label searchStatus;
+
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("Personal Finance Management System");
         DatabaseInitializer.initializeDatabase();
+        Metrics.enableJmx();
+        transactionManager.addListener(new TransactionListener() {
+            @Override
+            public void onTransactionAdded(int userId, Transaction transaction) {
+                onLedgerChanged(userId);
+            }
+
+            @Override
+            public void onTransactionDeleted(int userId, Transaction transaction) {
+                onLedgerChanged(userId);
+            }
+
+            @Override
+            public void onTransactionUpdated(int userId, Transaction before, Transaction after) {
+                onLedgerChanged(userId);
+            }
+
+            @Override
+            public void onTransactionsReplaced(int userId) {
+                onLedgerChanged(userId);
+            }
+        });
+        budgetMonitor.addAlertListener(alert -> {
+            if (alert.getUserId() == loggedInUserId) {
+                Platform.runLater(() -> showBudgetAlerts(List.of(alert)));
+            }
+        });
         primaryStage.setScene(new Scene(createLoginScreen(primaryStage), 800, 600));
         primaryStage.show();
         
@@ -58,6 +127,21 @@ public class PFMSApp extends Application {
 
     }
 
+    @Override
+    public void stop() {
+        // Close pooled connections so the WAL is checkpointed on exit
+        AsyncService.shutdown();
+        DatabaseConnection.shutdown();
+    }
+
+    // Called on the writer's thread after a ledger write has been committed
+    private void onLedgerChanged(int userId) {
+        if (userId == loggedInUserId) {
+            dashboardViews.invalidate(DashboardInvalidator.View.TABLE, DashboardInvalidator.View.PIE,
+                    DashboardInvalidator.View.BAR, DashboardInvalidator.View.SUMMARY, DashboardInvalidator.View.BUDGETS);
+        }
+    }
+
     private VBox createLoginScreen(Stage stage) {
         VBox layout = new VBox(15);
         layout.setPadding(new Insets(30));
@@ -100,25 +184,48 @@ public class PFMSApp extends Application {
         loginButton.setOnAction(e -> {
             String username = usernameField.getText();
             String password = passwordField.getText();
-            if (userManager.loginUser(username, password)) {
-                loggedInUserId = userManager.getUserId(username);
-                Scene dashboardScene = createDashboardScene(stage);
-                stage.setScene(dashboardScene);
-                stage.setFullScreen(true); // Enable full-screen mode
-            } else {
-                messageLabel.setText("Invalid username or password.");
-            }
+            loginButton.setDisable(true);
+            messageLabel.setText("");
+            // Password check and session load both run in the background: one query to authenticate,
+            // then one read transaction for everything the first frame shows
+            tasks.submit(() -> {
+                        UserProfile profile = userManager.authenticate(username, password);
+                        if (profile == null) {
+                            return null;
+                        }
+                        try {
+                            return sessionLoader.load(profile); // Caches built once here, then kept current by deltas
+                        } catch (SQLException ex) {
+                            System.err.println("Error loading session: " + ex.getMessage());
+                            return null;
+                        }
+                    },
+                    session -> {
+                        if (session != null) {
+                            loggedInUserId = session.getProfile().getId();
+                            Scene dashboardScene = createDashboardScene(stage, session);
+                            stage.setScene(dashboardScene);
+                            stage.setFullScreen(true); // Enable full-screen mode
+                            showBudgetAlerts(session.getBudgetAlerts());
+                        } else {
+                            messageLabel.setText("Invalid username or password.");
+                        }
+                    },
+                    () -> loginButton.setDisable(false));
         });
 
 
         registerButton.setOnAction(e -> {
             String username = usernameField.getText();
             String password = passwordField.getText();
-            if (userManager.registerUser(username, password)) {
-                messageLabel.setText("Registration successful. Please log in.");
-            } else {
-                messageLabel.setText("Registration failed. Username may already exist.");
-            }
+            registerButton.setDisable(true);
+            tasks.submit(() -> userManager.registerUser(username, password), registered -> {
+                if (registered) {
+                    messageLabel.setText("Registration successful. Please log in.");
+                } else {
+                    messageLabel.setText("Registration failed. Username may already exist.");
+                }
+            }, () -> registerButton.setDisable(false));
         });
 
         HBox buttonBox = new HBox(10, loginButton, registerButton);
@@ -134,7 +241,7 @@ public class PFMSApp extends Application {
    // private ListView<String> budgetSectionListView;
     
 
-    private TableView<Map.Entry<String, Double>> budgetTable;
+    private TableView<Map.Entry<String, Money>> budgetTable;
 
     private VBox createBudgetSection() {
         VBox budgetSection = new VBox(10);
@@ -151,23 +258,38 @@ public class PFMSApp extends Application {
         budgetTable.setPrefWidth(300);
 
         // Category Column
-        TableColumn<Map.Entry<String, Double>, String> categoryColumn = new TableColumn<>("Category");
+        TableColumn<Map.Entry<String, Money>, String> categoryColumn = new TableColumn<>("Category");
         categoryColumn.setCellValueFactory(cellData -> 
             new javafx.beans.property.SimpleStringProperty(cellData.getValue().getKey())
         );
         categoryColumn.setPrefWidth(150);
 
         // Budget Column
-        TableColumn<Map.Entry<String, Double>, String> budgetColumn = new TableColumn<>("Budget");
+        TableColumn<Map.Entry<String, Money>, String> budgetColumn = new TableColumn<>("Budget");
         budgetColumn.setCellValueFactory(cellData -> 
-            new javafx.beans.property.SimpleStringProperty(String.format("$%.2f", cellData.getValue().getValue()))
+            new javafx.beans.property.SimpleStringProperty("$" + cellData.getValue().getValue().format())
         );
         budgetColumn.setPrefWidth(150);
 
-        budgetTable.getColumns().addAll(categoryColumn, budgetColumn);
+        // Spent Column: this month's expenses from the budget monitor's counters
+        TableColumn<Map.Entry<String, Money>, String> spentColumn = new TableColumn<>("Spent This Month");
+        spentColumn.setCellValueFactory(cellData ->
+            new javafx.beans.property.SimpleStringProperty(
+                    "$" + budgetMonitor.getSpent(loggedInUserId, cellData.getValue().getKey()).format())
+        );
+        spentColumn.setPrefWidth(150);
+
+        // Categories that raised an alert this month are highlighted
+        budgetTable.setRowFactory(table -> new TableRow<>() {
+            @Override
+            protected void updateItem(Map.Entry<String, Money> item, boolean empty) {
+                super.updateItem(item, empty);
+                boolean alerted = !empty && item != null && alertedCategories.contains(item.getKey());
+                setStyle(alerted ? "-fx-background-color: #ffd6d6;" : "");
+            }
+        });
 
-        // Populate the table with budget data
-        refreshBudgetTable(budgetTable);
+        budgetTable.getColumns().addAll(categoryColumn, budgetColumn, spentColumn);
 
         budgetSection.getChildren().addAll(titleLabel, budgetTable);
         return budgetSection;
@@ -176,15 +298,28 @@ public class PFMSApp extends Application {
 
 
 
-    private void refreshBudgetTable(TableView<Map.Entry<String, Double>> budgetTable) {
-        Map<String, Double> budgets = budgetManager.getBudgets(loggedInUserId);
-        ObservableList<Map.Entry<String, Double>> budgetData = FXCollections.observableArrayList(budgets.entrySet());
-        budgetTable.setItems(budgetData);
+    private void refreshBudgetTable(TableView<Map.Entry<String, Money>> budgetTable) {
+        int userId = loggedInUserId;
+        tasks.refresh("refreshBudgetTable", () -> budgetManager.getBudgets(userId), budgets -> {
+            // Only rows whose budget changed are replaced; refresh() redraws the spend and highlight of the rest
+            ObservableList<Map.Entry<String, Money>> rows = budgetTable.getItems();
+            Map<String, Money> pending = new HashMap<>(budgets);
+            rows.removeIf(row -> !pending.containsKey(row.getKey()));
+            for (int i = 0; i < rows.size(); i++) {
+                Map.Entry<String, Money> row = rows.get(i);
+                Money budget = pending.remove(row.getKey());
+                if (!budget.equals(row.getValue())) {
+                    rows.set(i, Map.entry(row.getKey(), budget));
+                }
+            }
+            pending.forEach((category, budget) -> rows.add(Map.entry(category, budget)));
+            budgetTable.refresh();
+        });
     }
 
 
     
-    private VBox createProfileSection() {
+    private VBox createProfileSection(UserProfile profile) {
         VBox profileSection = new VBox(10);
         profileSection.setPadding(new Insets(10));
         profileSection.setStyle("-fx-border-color: lightgray; -fx-border-radius: 5; -fx-background-color: white;");
@@ -192,18 +327,15 @@ public class PFMSApp extends Application {
         Label titleLabel = new Label("Profile Information");
         titleLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
 
-        // Fetch user details
-        String username = userManager.getUsernameById(loggedInUserId); 
-        Label usernameLabel = new Label("Username: " + username);
-
-        Label userIdLabel = new Label("User ID: " + loggedInUserId);
+        Label usernameLabel = new Label("Username: " + profile.getUsername());
+        Label userIdLabel = new Label("User ID: " + profile.getId());
 
         profileSection.getChildren().addAll(titleLabel, usernameLabel, userIdLabel);
         return profileSection;
     }
 
 
-    private Scene createDashboardScene(Stage stage) {
+    private Scene createDashboardScene(Stage stage, SessionSnapshot session) {
         BorderPane root = new BorderPane();
         VBox dashboard = new VBox(15);
         dashboard.setPadding(new Insets(20));
@@ -213,14 +345,37 @@ public class PFMSApp extends Application {
         dashboard.getChildren().add(dashboardLabel);
 
         // Profile Section
-        VBox profileSection = createProfileSection();
+        VBox profileSection = createProfileSection(session.getProfile());
         dashboard.getChildren().add(profileSection);
 
         // Summary Section
         summaryLabel = new Label();
-        updateSummary();
         dashboard.getChildren().add(summaryLabel);
 
+        // Time window: the table, charts and summary only load and aggregate the selected period
+        window = TransactionFilter.ALL;
+        ComboBox<TimeWindow> windowBox = new ComboBox<>(FXCollections.observableArrayList(TimeWindow.values()));
+        windowBox.setValue(TimeWindow.ALL_TIME);
+        windowBox.setOnAction(e -> {
+            window = windowBox.getValue().toFilter(LocalDate.now());
+            dashboardViews.invalidate(DashboardInvalidator.View.TABLE, DashboardInvalidator.View.PIE,
+                    DashboardInvalidator.View.BAR, DashboardInvalidator.View.SUMMARY);
+        });
+        // Search as you type: the query runs once typing pauses, and a newer query supersedes an older one
+        searchText = "";
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search descriptions");
+        searchStatus = new Label();
+        PauseTransition searchPause = new PauseTransition(SEARCH_DELAY);
+        searchPause.setOnFinished(e -> {
+            searchText = searchField.getText().trim();
+            dashboardViews.invalidate(DashboardInvalidator.View.TABLE);
+        });
+        searchField.textProperty().addListener((observable, oldText, newText) -> searchPause.playFromStart());
+        HBox windowSection = new HBox(10, new Label("Show:"), windowBox, searchField, searchStatus);
+        windowSection.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+        dashboard.getChildren().add(windowSection);
+
         // Charts Section (Bar Chart and Pie Chart side by side)
         HBox chartsSection = new HBox(15);
         chartsSection.setPadding(new Insets(10));
@@ -271,11 +426,33 @@ public class PFMSApp extends Application {
         HBox addTransactionForm = createAddTransactionForm();
         dashboard.getChildren().add(addTransactionForm);
 
+        // Bank Statement Import
+        HBox importSection = createImportSection(stage);
+        dashboard.getChildren().add(importSection);
+
         // Logout Button
         Button logoutButton = new Button("Logout");
-        logoutButton.setOnAction(e -> stage.setScene(new Scene(createLoginScreen(stage), 800, 600)));
+        logoutButton.setOnAction(e -> {
+            summaryCache.evict(loggedInUserId);
+            budgetMonitor.evict(loggedInUserId);
+            alertedCategories.clear();
+            stage.setScene(new Scene(createLoginScreen(stage), 800, 600));
+        });
         dashboard.getChildren().add(logoutButton);
 
+        // Every view is drawn through the invalidator so each one redraws at most once per pulse
+        dashboardViews.register(DashboardInvalidator.View.TABLE, this::refreshTransactionTable);
+        dashboardViews.register(DashboardInvalidator.View.PIE, this::refreshPieChart);
+        dashboardViews.register(DashboardInvalidator.View.BAR, this::refreshBarChart);
+        dashboardViews.register(DashboardInvalidator.View.SUMMARY, this::updateSummary);
+        dashboardViews.register(DashboardInvalidator.View.BUDGETS, () -> refreshBudgetTable(budgetTable));
+
+        // The first frame comes from the session snapshot; charts and summary read the summary cache it filled
+        budgetTable.setItems(FXCollections.observableArrayList(session.getBudgets().entrySet()));
+        transactions.reload(loggedInUserId, session.getTransactionCount());
+        dashboardViews.invalidate(DashboardInvalidator.View.PIE, DashboardInvalidator.View.BAR,
+                DashboardInvalidator.View.SUMMARY);
+
         root.setCenter(dashboard);
         return new Scene(root, 1200, 800); 
     }
@@ -302,24 +479,34 @@ public class PFMSApp extends Application {
         saveButton.setOnAction(e -> {
             String date = dateField.getText();
             String description = descriptionField.getText();
-            double amount;
+            Money amount;
             try {
-                amount = Double.parseDouble(amountField.getText());
+                amount = Money.parse(amountField.getText());
             } catch (NumberFormatException ex) {
-                showAlert("Invalid amount. Please enter a valid number.");
+                showAlert("Invalid amount. Please enter a number with at most two decimals.");
                 return;
             }
             String type = typeBox.getValue();
+            if (DateUtils.parse(date) == null) {
+                showAlert("Invalid date. Please use MM/DD/YYYY.");
+                return;
+            }
 
             transaction.setDate(date);
             transaction.setDescription(description);
             transaction.setAmount(amount);
             transaction.setType(type);
 
-            transactionManager.addTransaction(loggedInUserId, transaction);
-            refreshTransactions();
-            refreshBudgets();
-            editStage.close();
+            int userId = loggedInUserId;
+            saveButton.setDisable(true);
+            tasks.submit(() -> !transactionManager.updateTransactionAsync(userId, transaction).join()
+                    && transactionManager.isArchived(userId, transaction.getId()), archived -> {
+                if (archived) {
+                    showAlert(ARCHIVED_MESSAGE);
+                } else {
+                    editStage.close();
+                }
+            }, () -> saveButton.setDisable(false));
         });
 
         form.getChildren().addAll(new Label("Date:"), dateField, new Label("Description:"), descriptionField,
@@ -338,7 +525,8 @@ public class PFMSApp extends Application {
         tableView.setPrefHeight(300); // Adjust the height
         tableView.setPrefWidth(600); // Adjust the width
         tableView.setEditable(false);
-        transactions = FXCollections.observableArrayList();
+        // Rows are paged in from the database as they scroll into view
+        transactions = new PagedTransactionList(transactionManager, tasks);
         tableView.setItems(transactions);
 
         TableColumn<Transaction, String> dateColumn = new TableColumn<>("Date");
@@ -347,7 +535,7 @@ public class PFMSApp extends Application {
         TableColumn<Transaction, String> descriptionColumn = new TableColumn<>("Description");
         descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
 
-        TableColumn<Transaction, Double> amountColumn = new TableColumn<>("Amount");
+        TableColumn<Transaction, Money> amountColumn = new TableColumn<>("Amount");
         amountColumn.setCellValueFactory(new PropertyValueFactory<>("amount"));
 
         TableColumn<Transaction, String> typeColumn = new TableColumn<>("Type");
@@ -362,14 +550,25 @@ public class PFMSApp extends Application {
             {
                 editButton.setOnAction(e -> {
                     Transaction transaction = getTableView().getItems().get(getIndex());
-                    openEditTransactionForm(transaction);
+                    if (transaction != null) {
+                        openEditTransactionForm(transaction);
+                    }
                 });
 
                 deleteButton.setOnAction(e -> {
                     Transaction transaction = getTableView().getItems().get(getIndex());
-                    transactionManager.deleteTransaction(transaction.getId());
-                    refreshTransactions();
-                    refreshBudgets();
+                    if (transaction == null) {
+                        return;
+                    }
+                    // The dashboard redraws through the ledger listener once the delete commits
+                    int userId = loggedInUserId;
+                    int id = transaction.getId();
+                    tasks.submit(() -> transactionManager.deleteTransactionAsync(userId, id).join() == null
+                            && transactionManager.isArchived(userId, id), archived -> {
+                        if (archived) {
+                            showAlert(ARCHIVED_MESSAGE);
+                        }
+                    });
                 });
             }
 
@@ -385,7 +584,8 @@ public class PFMSApp extends Application {
         });
 
         tableView.getColumns().addAll(dateColumn, descriptionColumn, amountColumn, typeColumn, actionColumn);
-        refreshTransactions();
+        // Sorting would have to materialize every row; the list is already ordered newest first
+        tableView.getColumns().forEach(column -> column.setSortable(false));
         return tableView;
     }
 
@@ -411,11 +611,11 @@ public class PFMSApp extends Application {
         addButton.setOnAction(e -> {
             String date = dateField.getText();
             String description = descriptionField.getText();
-            double amount;
+            Money amount;
             try {
-                amount = Double.parseDouble(amountField.getText());
+                amount = Money.parse(amountField.getText());
             } catch (NumberFormatException ex) {
-                showAlert("Invalid amount. Please enter a valid number.");
+                showAlert("Invalid amount. Please enter a number with at most two decimals.");
                 return;
             }
             String type = typeBox.getValue();
@@ -423,20 +623,140 @@ public class PFMSApp extends Application {
                 showAlert("Please fill all fields.");
                 return;
             }
+            if (DateUtils.parse(date) == null) {
+                showAlert("Invalid date. Please use MM/DD/YYYY.");
+                return;
+            }
             Transaction transaction = new Transaction(0, date, description, amount, type);
-            transactionManager.addTransaction(loggedInUserId, transaction);
-            refreshTransactions();
-            refreshBudgets();
-            dateField.clear();
-            descriptionField.clear();
-            amountField.clear();
-            typeBox.setValue(null);
+            int userId = loggedInUserId;
+            // A failed insert reaches the error alert and leaves the form filled in
+            tasks.submit(() -> transactionManager.addTransactionAsync(userId, transaction).join(), added -> {
+                dateField.clear();
+                descriptionField.clear();
+                amountField.clear();
+                typeBox.setValue(null);
+            });
         });
 
         form.getChildren().addAll(dateField, descriptionField, amountField, typeBox, addButton);
         return form;
     }
 
+    private HBox createImportSection(Stage stage) {
+        HBox section = new HBox(10);
+        section.setPadding(new Insets(10));
+        section.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+
+        Button importButton = new Button("Import Statement (CSV/OFX)");
+        ProgressBar progressBar = new ProgressBar(0);
+        progressBar.setVisible(false);
+        Label statusLabel = new Label();
+
+        importButton.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Import Bank Statement");
+            chooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("Bank statements", "*.csv", "*.ofx", "*.qfx"),
+                    new FileChooser.ExtensionFilter("All files", "*.*"));
+            File file = chooser.showOpenDialog(stage);
+            if (file == null) {
+                return;
+            }
+
+            importButton.setDisable(true);
+            progressBar.setVisible(true);
+            progressBar.setProgress(0);
+            statusLabel.setText("Importing " + file.getName() + "...");
+            int userId = loggedInUserId;
+
+            // Parsing and inserting run in the background; progress is published back on the FX thread
+            Thread importThread = new Thread(() -> {
+                try {
+                    TransactionImporter.ImportProgress result = new TransactionImporter().importFile(userId,
+                            file.toPath(), progress -> Platform.runLater(() -> {
+                                progressBar.setProgress(progress.getFractionDone());
+                                statusLabel.setText(progress.toString());
+                            }));
+                    Platform.runLater(() -> {
+                        String message = String.format("Imported %,d transactions in %.1f s (%,.0f rows/sec).",
+                                result.getRowsImported(), result.getElapsedSeconds(), result.getRowsPerSecond());
+                        if (result.getRejectsFile() != null) {
+                            message += String.format("%n%,d rows were rejected; see %s",
+                                    result.getRowsRejected(), result.getRejectsFile());
+                        }
+                        statusLabel.setText(result.toString());
+                        showAlert(message);
+                    });
+                } catch (Exception ex) {
+                    Platform.runLater(() -> {
+                        statusLabel.setText("Import failed.");
+                        showAlert("Import failed: " + ex.getMessage());
+                    });
+                } finally {
+                    transactionManager.fireTransactionsReplaced(userId);
+                    Platform.runLater(() -> {
+                        importButton.setDisable(false);
+                        progressBar.setVisible(false);
+                    });
+                }
+            }, "pfms-import");
+            importThread.setDaemon(true);
+            importThread.start();
+        });
+
+        // Exports the selected time window; rows are streamed to the file, so the size of the ledger does not matter
+        Button exportButton = new Button("Export (CSV/NDJSON)");
+        exportButton.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Export Transactions");
+            chooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                    new FileChooser.ExtensionFilter("CSV, gzip-compressed", "*.csv.gz"),
+                    new FileChooser.ExtensionFilter("Newline-delimited JSON", "*.ndjson"),
+                    new FileChooser.ExtensionFilter("Newline-delimited JSON, gzip-compressed", "*.ndjson.gz"));
+            chooser.setInitialFileName("transactions.csv");
+            File file = chooser.showSaveDialog(stage);
+            if (file == null) {
+                return;
+            }
+
+            exportButton.setDisable(true);
+            progressBar.setVisible(true);
+            progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+            statusLabel.setText("Exporting to " + file.getName() + "...");
+            int userId = loggedInUserId;
+            TransactionFilter filter = window;
+
+            Thread exportThread = new Thread(() -> {
+                try {
+                    TransactionExporter.ExportProgress result = new TransactionExporter().exportFile(userId, filter,
+                            file.toPath(), progress -> Platform.runLater(() -> statusLabel.setText(progress.toString())));
+                    Platform.runLater(() -> {
+                        statusLabel.setText(result.toString());
+                        showAlert(String.format("Exported %,d transactions to %s in %.1f s (%,.0f rows/sec).",
+                                result.getRowsWritten(), file.getName(), result.getElapsedSeconds(),
+                                result.getRowsPerSecond()));
+                    });
+                } catch (Exception ex) {
+                    Platform.runLater(() -> {
+                        statusLabel.setText("Export failed.");
+                        showAlert("Export failed: " + ex.getMessage());
+                    });
+                } finally {
+                    Platform.runLater(() -> {
+                        exportButton.setDisable(false);
+                        progressBar.setVisible(false);
+                    });
+                }
+            }, "pfms-export");
+            exportThread.setDaemon(true);
+            exportThread.start();
+        });
+
+        section.getChildren().addAll(importButton, exportButton, progressBar, statusLabel);
+        return section;
+    }
+
     private VBox createBudgetManagerForm() {
         VBox form = new VBox(10);
         form.setPadding(new Insets(10));
@@ -454,23 +774,37 @@ public class PFMSApp extends Application {
         Button setBudgetButton = new Button("Set Budget");
         setBudgetButton.setOnAction(e -> {
             String category = categoryField.getText();
-            double amount;
+            Money amount;
             try {
-                amount = Double.parseDouble(budgetAmountField.getText());
+                amount = Money.parse(budgetAmountField.getText());
             } catch (NumberFormatException ex) {
-                showAlert("Invalid amount. Please enter a valid number.");
+                showAlert("Invalid amount. Please enter a number with at most two decimals.");
                 return;
             }
             if (category.isEmpty()) {
                 showAlert("Category cannot be empty.");
                 return;
             }
-            budgetManager.setBudget(loggedInUserId, category, amount);
-            categoryField.clear();
-            budgetAmountField.clear();
-
-            // Correctly refresh the budget list
-            refreshBudgetTable(budgetTable);
+            int userId = loggedInUserId;
+            // The monitor's counters only take the budget once it has been stored
+            tasks.submit(() -> {
+                try {
+                    budgetManager.setBudget(userId, category, amount);
+                } catch (SQLException ex) {
+                    System.err.println("Error setting budget: " + ex.getMessage());
+                    return false;
+                }
+                budgetMonitor.onBudgetSet(userId, category, amount);
+                return true;
+            }, saved -> {
+                if (!saved) {
+                    showAlert("The budget could not be saved. Please try again.");
+                    return;
+                }
+                categoryField.clear();
+                budgetAmountField.clear();
+                dashboardViews.invalidate(DashboardInvalidator.View.BUDGETS);
+            });
 
         });
 
@@ -480,6 +814,7 @@ public class PFMSApp extends Application {
     }
     
     private BarChart<String, Number> barChart;
+    private BarChartUpdater barChartUpdater;
 
     private BarChart<String, Number> createBarChart() {
         CategoryAxis xAxis = new CategoryAxis();
@@ -489,146 +824,123 @@ public class PFMSApp extends Application {
 
         barChart = new BarChart<>(xAxis, yAxis);
         barChart.setTitle("Monthly Income vs Expenses");
-
-        refreshBarChart();
+        barChartUpdater = new BarChartUpdater(barChart, List.of("Income", "Expense"));
         return barChart;
     }
     
     private void refreshBarChart() {
-        barChart.getData().clear(); // Clear old data
-
-        // Group transactions by month
-        Map<String, Double> incomeByMonth = transactionManager.getTransactions(loggedInUserId).stream()
-            .filter(t -> "Income".equals(t.getType())) // Filter for income
-            .collect(Collectors.groupingBy(
-                t -> t.getDate().substring(0, 7), // Extract "YYYY-MM" from date
-                Collectors.summingDouble(Transaction::getAmount)
-            ));
-
-        Map<String, Double> expenseByMonth = transactionManager.getTransactions(loggedInUserId).stream()
-            .filter(t -> "Expense".equals(t.getType())) // Filter for expenses
-            .collect(Collectors.groupingBy(
-                t -> t.getDate().substring(0, 7), // Extract "YYYY-MM" from date
-                Collectors.summingDouble(Transaction::getAmount)
-            ));
-
-        // Create income and expense series
-        XYChart.Series<String, Number> incomeSeries = new XYChart.Series<>();
-        incomeSeries.setName("Income");
-
-        XYChart.Series<String, Number> expenseSeries = new XYChart.Series<>();
-        expenseSeries.setName("Expense");
-
-        // Populate series with data
-        incomeByMonth.forEach((month, totalIncome) -> incomeSeries.getData().add(new XYChart.Data<>(month, totalIncome)));
-        expenseByMonth.forEach((month, totalExpense) -> expenseSeries.getData().add(new XYChart.Data<>(month, totalExpense)));
-
-        // Add series to bar chart
-        barChart.getData().addAll(incomeSeries, expenseSeries);
+        if (window.isAll()) {
+            tasks.cancel("refreshBarChart");
+            // Monthly totals come from the in-memory summary, one entry per month
+            showBarChart(summaryCache.getMonthlyTotals(loggedInUserId, "Income"),
+                    summaryCache.getMonthlyTotals(loggedInUserId, "Expense"));
+            return;
+        }
+        int userId = loggedInUserId;
+        TransactionFilter filter = window;
+        tasks.refresh("refreshBarChart",
+                () -> List.of(transactionManager.getMonthlyTotals(userId, "Income", filter),
+                        transactionManager.getMonthlyTotals(userId, "Expense", filter)),
+                totals -> showBarChart(totals.get(0), totals.get(1)));
+    }
+
+    private void showBarChart(Map<String, Money> incomeByMonth, Map<String, Money> expenseByMonth) {
+        // Existing bars are updated in place; only months that appear or disappear add or remove nodes
+        barChartUpdater.update(Map.of("Income", incomeByMonth, "Expense", expenseByMonth));
     }
 
 
 
 
     private PieChart createPieChart() {
-        PieChart pieChart = new PieChart();
-        refreshPieChart(pieChart);
-        return pieChart;
+        PieChart chart = new PieChart();
+        pieChartUpdater = new PieChartUpdater(chart);
+        return chart;
     }
 
-    private void refreshTransactions() {
-        transactions.setAll(transactionManager.getTransactions(loggedInUserId));
-        refreshPieChart(pieChart); 
-        refreshBarChart();         
-        updateSummary();           
+    private void refreshTransactionTable() {
+        int userId = loggedInUserId;
+        TransactionFilter filter = window;
+        String search = searchText;
+        if (!search.isEmpty()) {
+            // The best-ranked matches within the time window, as one page
+            tasks.refresh("refreshTransactions",
+                    () -> transactionManager.searchTransactions(userId, search, filter, null, SEARCH_RESULTS),
+                    page -> {
+                        transactionTable.setItems(FXCollections.observableArrayList(page.getTransactions()));
+                        searchStatus.setText(page.getNextKey() != null
+                                ? "Showing the best " + SEARCH_RESULTS + " matches"
+                                : page.getTransactions().size() + " matches");
+                    });
+            return;
+        }
+        tasks.refresh("refreshTransactions", () -> transactionManager.countTransactions(userId, filter),
+                count -> {
+                    transactionTable.setItems(transactions);
+                    searchStatus.setText("");
+                    transactions.reload(userId, filter, count);
+                });
     }
 
 
-    private void refreshPieChart(PieChart pieChart) {
-        ObservableList<PieChart.Data> pieData = FXCollections.observableArrayList();
-
-        Map<String, Double> categoryTotals = transactionManager.getTransactions(loggedInUserId).stream()
-                .filter(t -> "Expense".equals(t.getType())) 
-                .collect(Collectors.groupingBy(Transaction::getDescription, Collectors.summingDouble(Transaction::getAmount)));
-
-        categoryTotals.forEach((category, total) -> pieData.add(new PieChart.Data(category, total)));
+    private void refreshPieChart() {
+        if (window.isAll()) {
+            tasks.cancel("refreshPieChart");
+            showPieChart(summaryCache.getCategoryTotals(loggedInUserId, "Expense"));
+            return;
+        }
+        int userId = loggedInUserId;
+        TransactionFilter filter = window;
+        tasks.refresh("refreshPieChart", () -> transactionManager.getCategoryTotals(userId, "Expense", filter),
+                totals -> showPieChart(totals));
+    }
 
-        pieChart.setData(pieData);
-        pieChart.getData().forEach(data -> {
-            Tooltip.install(data.getNode(), new Tooltip(
-                    String.format("%s: $%.2f", data.getName(), data.getPieValue())
-            ));
-            data.getNode().setOnMouseEntered(e -> data.getNode().setStyle("-fx-scale: 1.1; -fx-cursor: hand;"));
-            data.getNode().setOnMouseExited(e -> data.getNode().setStyle("-fx-scale: 1.0;"));
-        });
+    // Slices, their tooltips and handlers are reused; long tails are folded into "Other"
+    private void showPieChart(Map<String, Money> categoryTotals) {
+        pieChartUpdater.update(categoryTotals);
     }
 
 
     private void updateSummary() {
-        double totalIncome = transactions.stream()
-                .filter(t -> "Income".equals(t.getType()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        if (window.isAll()) {
+            tasks.cancel("updateSummary");
+            showSummary(summaryCache.getTotalsByType(loggedInUserId));
+            return;
+        }
+        int userId = loggedInUserId;
+        TransactionFilter filter = window;
+        tasks.refresh("updateSummary", () -> transactionManager.getTotalsByType(userId, filter), this::showSummary);
+    }
 
-        double totalExpenses = transactions.stream()
-                .filter(t -> "Expense".equals(t.getType()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+    private void showSummary(Map<String, Money> totals) {
+        Money totalIncome = totals.getOrDefault("Income", Money.ZERO);
+        Money totalExpenses = totals.getOrDefault("Expense", Money.ZERO);
 
-        double remainingBudget = totalIncome - totalExpenses;
+        Money remainingBudget = totalIncome.minus(totalExpenses);
 
-        summaryLabel.setText(String.format("Total Income: $%.2f | Total Expenses: $%.2f | Remaining Budget: $%.2f",
-                totalIncome, totalExpenses, remainingBudget));
+        summaryLabel.setText(String.format("Total Income: $%s | Total Expenses: $%s | Remaining Budget: $%s",
+                totalIncome.format(), totalExpenses.format(), remainingBudget.format()));
     }
     
     
 
+    // Categories that reached a budget threshold this month; only touched on the FX Application Thread
     private final Set<String> alertedCategories = new HashSet<>();
 
-    
-    private void refreshBudgets() {
-    	 barChart.getData().clear(); // Clear old data
-
-    	    // Group transactions by month for Income
-    	    Map<String, Double> incomeByMonth = transactionManager.getTransactions(loggedInUserId).stream()
-    	        .filter(t -> "Income".equals(t.getType())) // Filter only Income
-    	        .collect(Collectors.groupingBy(
-    	            t -> t.getDate().substring(0, 7), // Extract "YYYY-MM" from the date
-    	            Collectors.summingDouble(Transaction::getAmount) // Sum amounts
-    	        ));
-
-    	    // Group transactions by month for Expenses
-    	    Map<String, Double> expenseByMonth = transactionManager.getTransactions(loggedInUserId).stream()
-    	        .filter(t -> "Expense".equals(t.getType())) // Filter only Expenses
-    	        .collect(Collectors.groupingBy(
-    	            t -> t.getDate().substring(0, 7), // Extract "YYYY-MM" from the date
-    	            Collectors.summingDouble(Transaction::getAmount) // Sum amounts
-    	        ));
-
-    	    // Create series for Income and Expenses
-    	    XYChart.Series<String, Number> incomeSeries = new XYChart.Series<>();
-    	    incomeSeries.setName("Income");
-
-    	    XYChart.Series<String, Number> expenseSeries = new XYChart.Series<>();
-    	    expenseSeries.setName("Expense");
-
-    	    // Populate Income series
-    	    incomeByMonth.forEach((month, totalIncome) -> 
-    	        incomeSeries.getData().add(new XYChart.Data<>(month, totalIncome))
-    	    );
-
-    	    // Populate Expense series
-    	    expenseByMonth.forEach((month, totalExpense) -> 
-    	        expenseSeries.getData().add(new XYChart.Data<>(month, totalExpense))
-    	    );
-
-    	    // Add series to the Bar Chart
-    	    barChart.getData().addAll(incomeSeries, expenseSeries);
+    private void showBudgetAlerts(List<BudgetAlert> alerts) {
+        if (alerts.isEmpty()) {
+            return;
+        }
+        StringBuilder message = new StringBuilder();
+        for (BudgetAlert alert : alerts) {
+            alertedCategories.add(alert.getCategory());
+            message.append(alert.isOverBudget() ? "Over budget - " : "Approaching budget - ")
+                    .append(alert).append('\n');
+        }
+        dashboardViews.invalidate(DashboardInvalidator.View.BUDGETS);
+        showAlert(message.toString().trim());
     }
 
-
-
-
     private void showAlert(String message) {
         Alert alert = new Alert(Alert.AlertType.WARNING);
         alert.setContentText(message);
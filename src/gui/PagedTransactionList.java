@@ -0,0 +1,161 @@
+package gui;
+
+import javafx.collections.ObservableListBase;
+import managers.TransactionManager;
+import models.Transaction;
+import models.TransactionFilter;
+import models.TransactionPage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only list of a user's transactions, optionally narrowed by a filter, that loads pages on demand.
+ *
+ * TableView only asks for the rows it is about to display. A row whose page is not
+ * cached yet is null, an empty row, while the page is read in the background with a
+ * keyset query; once it arrives its rows are replaced so the table draws them. A
+ * handful of recently used pages are kept and the others evicted, which keeps memory
+ * flat however large the ledger is.
+ */
+class PagedTransactionList extends ObservableListBase<Transaction> {
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 8;
+
+    private final TransactionManager transactionManager;
+    private final FxTaskRunner tasks;
+    private int userId = -1;
+    private TransactionFilter filter = TransactionFilter.ALL;
+    private int size;
+
+    // Access-ordered so the least recently displayed page is evicted first
+    private final LinkedHashMap<Integer, List<Transaction>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Transaction>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    // Key of the last row of page N, i.e. where page N + 1 starts; one small entry per page visited
+    private final Map<Integer, TransactionPage.Key> pageEndKeys = new HashMap<>();
+
+    // Pages being read; a page arriving after a reload belongs to the old list and is dropped
+    private final Set<Integer> loading = new HashSet<>();
+    private int generation;
+
+    // Read by the background loads, so a page the table has already scrolled far past is not read at all
+    private volatile int lastRequestedPage;
+
+    PagedTransactionList(TransactionManager transactionManager, FxTaskRunner tasks) {
+        this.transactionManager = transactionManager;
+        this.tasks = tasks;
+    }
+
+    /**
+     * Drops every cached page, e.g. after a write or a user switch, with a row count fetched off the FX thread.
+     */
+    void reload(int userId, int rowCount) {
+        reload(userId, filter, rowCount);
+    }
+
+    /**
+     * Shows only the rows that match {@code filter}; {@code rowCount} must have been counted with it.
+     */
+    void reload(int userId, TransactionFilter filter, int rowCount) {
+        int oldSize = size;
+        this.userId = userId;
+        this.filter = filter;
+        pages.clear();
+        pageEndKeys.clear();
+        loading.clear();
+        generation++;
+        size = rowCount;
+
+        beginChange();
+        if (oldSize > 0) {
+            nextRemove(0, Collections.nCopies(oldSize, (Transaction) null));
+        }
+        if (size > 0) {
+            nextAdd(0, size);
+        }
+        endChange();
+    }
+
+    @Override
+    public Transaction get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+        }
+        int pageNumber = index / PAGE_SIZE;
+        List<Transaction> page = pages.get(pageNumber);
+        if (page == null) {
+            requestPage(pageNumber);
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        // The ledger may have shrunk since the count was taken; the next reload fixes the size
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void requestPage(int pageNumber) {
+        lastRequestedPage = pageNumber;
+        if (!loading.add(pageNumber)) {
+            return;
+        }
+        int forGeneration = generation;
+        int forUser = userId;
+        TransactionFilter forFilter = filter;
+        TransactionPage.Key afterKey = pageNumber > 0 ? pageEndKeys.get(pageNumber - 1) : null;
+        tasks.submit(
+                () -> Math.abs(pageNumber - lastRequestedPage) > MAX_CACHED_PAGES
+                        ? null
+                        : readPage(forUser, forFilter, pageNumber, afterKey),
+                page -> {
+                    if (page != null && forGeneration == generation) {
+                        pageLoaded(pageNumber, page);
+                    }
+                },
+                () -> {
+                    if (forGeneration == generation) {
+                        loading.remove(pageNumber);
+                    }
+                });
+    }
+
+    // Runs in the background; without the end key of the previous page, the page start is found by offset
+    private TransactionPage readPage(int userId, TransactionFilter filter, int pageNumber, TransactionPage.Key afterKey) {
+        if (pageNumber > 0 && afterKey == null) {
+            afterKey = transactionManager.getPageKeyAt(userId, filter, pageNumber * PAGE_SIZE - 1);
+            if (afterKey == null) {
+                return new TransactionPage(Collections.emptyList(), null);
+            }
+        }
+        return transactionManager.getTransactionsPage(userId, filter, afterKey, PAGE_SIZE);
+    }
+
+    private void pageLoaded(int pageNumber, TransactionPage page) {
+        if (page.getNextKey() != null) {
+            pageEndKeys.put(pageNumber, page.getNextKey());
+        }
+        pages.put(pageNumber, page.getTransactions());
+
+        int from = pageNumber * PAGE_SIZE;
+        int to = Math.min(size, from + PAGE_SIZE);
+        if (from < to) {
+            beginChange();
+            nextReplace(from, to, Collections.nCopies(to - from, (Transaction) null));
+            endChange();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package gui;
+
+import javafx.scene.Node;
+import javafx.scene.chart.PieChart;
+import javafx.scene.control.Tooltip;
+import models.Money;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a PieChart in step with a map of category totals by changing only what differs.
+ *
+ * A slice whose category is still shown keeps its Data, node, tooltip and mouse handlers and
+ * only has its value and tooltip text updated; slices are added and removed one by one. Only
+ * the largest pfms.chart.topCategories (default 8) categories get their own slice, the rest
+ * are folded into "Other", so the number of nodes stays bounded however many categories exist.
+ * Must be used on the FX Application Thread.
+ */
+class PieChartUpdater {
+
+    private static final String OTHER = "Other";
+    private static final int TOP_CATEGORIES = Math.max(1, Integer.getInteger("pfms.chart.topCategories", 8));
+
+    private final PieChart chart;
+    // Slices in the order they were added; a surviving slice keeps its place
+    private final Map<String, PieChart.Data> slices = new LinkedHashMap<>();
+    private final Map<String, Tooltip> tooltips = new HashMap<>();
+
+    PieChartUpdater(PieChart chart) {
+        this.chart = chart;
+    }
+
+    void update(Map<String, Money> categoryTotals) {
+        Map<String, Money> shown = topWithOther(categoryTotals);
+
+        List<PieChart.Data> removed = new ArrayList<>();
+        slices.entrySet().removeIf(slice -> {
+            if (shown.containsKey(slice.getKey())) {
+                return false;
+            }
+            removed.add(slice.getValue());
+            tooltips.remove(slice.getKey());
+            return true;
+        });
+        chart.getData().removeAll(removed);
+
+        int folded = categoryTotals.size() > TOP_CATEGORIES + 1 ? categoryTotals.size() - TOP_CATEGORIES : 0;
+        shown.forEach((category, total) -> {
+            String text = (category.equals(OTHER) && folded > 0 ? OTHER + " (" + folded + " categories)" : category)
+                    + ": $" + total.format();
+            PieChart.Data slice = slices.get(category);
+            if (slice == null) {
+                slice = new PieChart.Data(category, total.toDouble());
+                slices.put(category, slice);
+                chart.getData().add(slice); // the chart creates the slice's node here
+                decorate(category, slice.getNode(), text);
+            } else {
+                if (slice.getPieValue() != total.toDouble()) {
+                    slice.setPieValue(total.toDouble());
+                }
+                tooltips.get(category).setText(text);
+            }
+        });
+    }
+
+    // Tooltip and hover effect are installed once, when the slice is created
+    private void decorate(String category, Node node, String text) {
+        Tooltip tooltip = new Tooltip(text);
+        tooltips.put(category, tooltip);
+        Tooltip.install(node, tooltip);
+        node.setOnMouseEntered(e -> node.setStyle("-fx-scale: 1.1; -fx-cursor: hand;"));
+        node.setOnMouseExited(e -> node.setStyle("-fx-scale: 1.0;"));
+    }
+
+    // The largest categories, largest first, plus the sum of the rest as "Other"
+    private static Map<String, Money> topWithOther(Map<String, Money> categoryTotals) {
+        List<Map.Entry<String, Money>> sorted = new ArrayList<>(categoryTotals.entrySet());
+        sorted.sort(Map.Entry.<String, Money>comparingByValue().reversed());
+        Map<String, Money> shown = new LinkedHashMap<>();
+        Money other = Money.ZERO;
+        for (int i = 0; i < sorted.size(); i++) {
+            Map.Entry<String, Money> entry = sorted.get(i);
+            // With one category over the limit it is shown as itself rather than as a one-entry "Other"
+            if (i < TOP_CATEGORIES || sorted.size() == TOP_CATEGORIES + 1) {
+                shown.put(entry.getKey(), entry.getValue());
+            } else {
+                other = other.plus(entry.getValue());
+            }
+        }
+        if (sorted.size() > TOP_CATEGORIES + 1) {
+            shown.merge(OTHER, other, Money::plus);
+        }
+        return shown;
+    }
+}
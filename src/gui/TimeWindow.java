@@ -0,0 +1,45 @@
+package gui;
+
+import models.TransactionFilter;
+
+import java.time.LocalDate;
+
+/**
+ * Periods offered by the dashboard's time-window selector. Each one ends at the end of the
+ * current month, quarter or year, so rows dated later in that period are included.
+ */
+enum TimeWindow {
+    THIS_MONTH("This month"),
+    THIS_QUARTER("This quarter"),
+    THIS_YEAR("This year"),
+    LAST_12_MONTHS("Last 12 months"),
+    ALL_TIME("All time");
+
+    private final String label;
+
+    TimeWindow(String label) {
+        this.label = label;
+    }
+
+    TransactionFilter toFilter(LocalDate today) {
+        LocalDate monthStart = today.withDayOfMonth(1);
+        switch (this) {
+            case THIS_MONTH:
+                return TransactionFilter.between(monthStart, monthStart.plusMonths(1).minusDays(1));
+            case THIS_QUARTER:
+                LocalDate quarterStart = monthStart.withMonth((today.getMonthValue() - 1) / 3 * 3 + 1);
+                return TransactionFilter.between(quarterStart, quarterStart.plusMonths(3).minusDays(1));
+            case THIS_YEAR:
+                return TransactionFilter.between(today.withDayOfYear(1), today.withDayOfYear(1).plusYears(1).minusDays(1));
+            case LAST_12_MONTHS:
+                return TransactionFilter.between(monthStart.minusMonths(11), monthStart.plusMonths(1).minusDays(1));
+            default:
+                return TransactionFilter.ALL;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,14 @@
+package main;
+
+import gui.PFMSApp;
+import javafx.application.Application;
+
+/**
+ * Keeps every JavaFX reference out of Main, so the headless commands never load the toolkit.
+ */
+class GuiLauncher {
+
+    static void launch(String[] args) {
+        Application.launch(PFMSApp.class, args);
+    }
+}
@@ -0,0 +1,381 @@
+package main;
+
+import database.DatabaseConnection;
+import database.DatabaseInitializer;
+import database.MonthlyRollup;
+import database.TransactionArchive;
+import managers.LedgerSummaryCache;
+import managers.TransactionExporter;
+import managers.TransactionImporter;
+import managers.TransactionManager;
+import managers.UserManager;
+import models.Money;
+import models.TransactionFilter;
+import server.ApiServer;
+import server.LoadGenerator;
+import util.Metrics;
+import util.OperationStats;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Command line entry points that work on a database without starting the UI, e.g. from cron:
+ *
+ * <pre>
+ * pfms report --db alice.db --user alice --month 2025-06
+ * pfms import --db alice.db --user alice statement.csv
+ * pfms export --db alice.db --user alice --out ledger.ndjson.gz
+ * pfms serve --db family.db --port 8080
+ * pfms verify --db alice.db --user alice
+ * pfms rebuild-rollups --db family.db
+ * pfms archive --db family.db --years 2
+ * pfms loadtest --url http://localhost:8080 --user alice --password secret --threads 32
+ * </pre>
+ *
+ * Only the database, manager and server classes are used here; no javafx.* class is loaded.
+ */
+class HeadlessCli {
+
+    private static final Set<String> COMMANDS = Set.of("report", "import", "export", "verify", "serve", "rebuild-rollups",
+            "archive", "loadtest", "help");
+    private static final Set<String> VALUE_OPTIONS = Set.of("--db", "--user", "--month", "--out", "--port", "--bind",
+            "--url", "--password", "--threads", "--seconds", "--warmup", "--writes", "--format", "--years");
+
+    private static final int OK = 0;
+    private static final int FAILED = 1;
+    private static final int USAGE = 2;
+
+    static boolean isCommand(String arg) {
+        return COMMANDS.contains(arg);
+    }
+
+    static int run(String[] args) {
+        String command = args[0];
+        Map<String, String> options = new HashMap<>();
+        List<String> arguments = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (VALUE_OPTIONS.contains(args[i])) {
+                if (i + 1 == args.length) {
+                    return usage("Missing value for " + args[i]);
+                }
+                options.put(args[i], args[++i]);
+            } else if (args[i].equals("--timing") || args[i].equals("--gzip")) {
+                options.put(args[i], "");
+            } else if (args[i].startsWith("--")) {
+                return usage("Unknown option " + args[i]);
+            } else {
+                arguments.add(args[i]);
+            }
+        }
+        if (command.equals("help")) {
+            return usage(null);
+        }
+        if (command.equals("loadtest")) {
+            return loadTest(options);
+        }
+        boolean allUsers = command.equals("serve") || command.equals("rebuild-rollups") || command.equals("archive");
+        if (!allUsers && !options.containsKey("--user")) {
+            return usage("--user is required");
+        }
+
+        if (options.containsKey("--db")) {
+            System.setProperty("pfms.db.path", options.get("--db"));
+        }
+        try {
+            DatabaseInitializer.initializeDatabase(false);
+            if (options.containsKey("--timing")) {
+                System.err.println("Database ready " + sinceJvmStart() + " ms after JVM start");
+            }
+            if (command.equals("serve")) {
+                Metrics.enableJmx();
+                return serve(options);
+            }
+            if (command.equals("rebuild-rollups")) {
+                return rebuildRollups();
+            }
+            if (command.equals("archive")) {
+                return archive(options);
+            }
+
+            String username = options.get("--user");
+            int userId = new UserManager().getUserId(username);
+            if (userId < 0) {
+                System.err.println("Unknown user: " + username);
+                return FAILED;
+            }
+
+            switch (command) {
+                case "report":
+                    return report(userId, username, options.get("--month"));
+                case "import":
+                    if (arguments.size() != 1) {
+                        return usage("import needs exactly one statement file");
+                    }
+                    return importStatement(userId, Paths.get(arguments.get(0)));
+                case "verify":
+                    return verify(userId, username);
+                default:
+                    return export(userId, options);
+            }
+        } finally {
+            DatabaseConnection.shutdown();
+            if (options.containsKey("--timing")) {
+                System.err.println("Finished " + sinceJvmStart() + " ms after JVM start");
+                for (OperationStats stats : Metrics.operations()) {
+                    if (stats.getCount() > 0) {
+                        System.err.println("  " + stats);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int report(int userId, String username, String month) {
+        YearMonth period;
+        try {
+            period = month == null ? YearMonth.now() : YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            return usage("--month must look like YYYY-MM");
+        }
+        String monthKey = period.toString();
+
+        TransactionManager transactionManager = new TransactionManager();
+        Map<String, Money> totals = transactionManager.getTotalsByType(userId);
+        Money monthIncome = transactionManager.getMonthlyTotals(userId, "Income").getOrDefault(monthKey, Money.ZERO);
+        Money monthExpenses = transactionManager.getMonthlyTotals(userId, "Expense").getOrDefault(monthKey, Money.ZERO);
+        Money income = totals.getOrDefault("Income", Money.ZERO);
+        Money expenses = totals.getOrDefault("Expense", Money.ZERO);
+
+        System.out.printf("User: %s (id %d)%n", username, userId);
+        System.out.printf("%-10s income %14s  expenses %14s  net %14s%n",
+                monthKey, monthIncome.format(), monthExpenses.format(), monthIncome.minus(monthExpenses).format());
+        System.out.printf("%-10s income %14s  expenses %14s  net %14s%n",
+                "All time", income.format(), expenses.format(), income.minus(expenses).format());
+
+        System.out.println("Expenses by category:");
+        transactionManager.getCategoryTotals(userId, "Expense").entrySet().stream()
+                .sorted(Map.Entry.<String, Money>comparingByValue().reversed())
+                .forEach(entry -> System.out.printf("  %-24s %14s%n", entry.getKey(), entry.getValue().format()));
+        return OK;
+    }
+
+    private static int importStatement(int userId, Path file) {
+        if (!Files.isRegularFile(file)) {
+            System.err.println("No such file: " + file);
+            return FAILED;
+        }
+        try {
+            TransactionImporter.ImportProgress result = new TransactionImporter().importFile(userId, file, null);
+            System.out.println("Imported " + file + ": " + result);
+            if (result.getRejectsFile() != null) {
+                System.out.println("Rejected rows written to " + result.getRejectsFile());
+            }
+            return OK;
+        } catch (IOException | SQLException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            return FAILED;
+        }
+    }
+
+    // Same columns the importer reads, so an export can be imported again
+    private static int export(int userId, Map<String, String> options) {
+        String out = options.get("--out");
+        TransactionExporter.Format format;
+        try {
+            format = options.containsKey("--format")
+                    ? TransactionExporter.Format.valueOf(options.get("--format").toUpperCase(Locale.ROOT))
+                    : out == null ? TransactionExporter.Format.CSV : TransactionExporter.Format.of(Paths.get(out));
+        } catch (IllegalArgumentException e) {
+            return usage("--format must be csv or ndjson");
+        }
+        boolean gzip = options.containsKey("--gzip") || out != null && out.toLowerCase(Locale.ROOT).endsWith(".gz");
+        TransactionExporter exporter = new TransactionExporter();
+        TransactionExporter.ExportProgress result;
+        try {
+            if (out == null) {
+                result = exporter.export(userId, TransactionFilter.ALL, format, gzip, Channels.newChannel(System.out),
+                        null);
+                System.out.flush();
+            } else {
+                result = exporter.exportFile(userId, TransactionFilter.ALL, Paths.get(out), format, gzip, null);
+                System.out.printf("Exported %,d transactions to %s in %.1f s (%,.0f rows/sec, %.1f MB/s)%n",
+                        result.getRowsWritten(), out, result.getElapsedSeconds(), result.getRowsPerSecond(),
+                        result.getMegabytesPerSecond());
+            }
+        } catch (IOException | SQLException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            return FAILED;
+        }
+        if (out == null && options.containsKey("--timing")) {
+            System.err.println("Export finished: " + result);
+        }
+        return OK;
+    }
+
+    // Runs until the process is stopped, e.g. with Ctrl+C; the shutdown hook lets queued writes commit first
+    private static int serve(Map<String, String> options) {
+        ApiServer server;
+        try {
+            int port = Integer.parseInt(options.getOrDefault("--port", "8080"));
+            server = new ApiServer(new InetSocketAddress(options.getOrDefault("--bind", "127.0.0.1"), port));
+        } catch (NumberFormatException e) {
+            return usage("--port must be a number");
+        } catch (IOException e) {
+            System.err.println("Could not start the server: " + e.getMessage());
+            return FAILED;
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            DatabaseConnection.shutdown();
+            stopped.countDown();
+        }));
+        server.start();
+        System.err.println("Serving on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/api/ ("
+                + (server.usesVirtualThreads() ? "virtual threads" : "thread pool") + ")");
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return OK;
+    }
+
+    private static int verify(int userId, String username) {
+        List<String> mismatches = new LedgerSummaryCache(new TransactionManager()).verify(userId);
+        if (mismatches.isEmpty()) {
+            System.out.println("Summary totals of " + username + " match the database.");
+            return OK;
+        }
+        mismatches.forEach(System.out::println);
+        System.out.println(mismatches.size() + " summary totals of " + username + " differ from the database.");
+        return FAILED;
+    }
+
+    private static int rebuildRollups() {
+        try {
+            MonthlyRollup.RebuildResult result = MonthlyRollup.rebuild();
+            System.out.println("Rebuilt " + result.getRows() + " monthly rollup rows in " + result.getElapsedMillis()
+                    + " ms; " + result.getStaleRows() + " were out of date.");
+            return OK;
+        } catch (SQLException e) {
+            System.err.println("Could not rebuild the monthly rollups: " + e.getMessage());
+            return FAILED;
+        }
+    }
+
+    private static int archive(Map<String, String> options) {
+        int years;
+        try {
+            years = options.containsKey("--years")
+                    ? Integer.parseInt(options.get("--years")) : TransactionArchive.defaultHorizonYears();
+        } catch (NumberFormatException e) {
+            return usage("--years must be a number");
+        }
+        if (years < 0) {
+            return usage("--years must not be negative");
+        }
+        try {
+            Path file = Paths.get(System.getProperty("pfms.db.path", "pfms.db"));
+            long sizeBefore = Files.size(file);
+            TransactionArchive.ArchiveResult result = TransactionArchive.archive(years);
+            if (result.getRows() == 0) {
+                System.out.println("No transactions dated before " + (Year.now().getValue() - years) + " to archive.");
+                return OK;
+            }
+            result.getRowsByYear().forEach((year, rows) ->
+                    System.out.printf("%d: %,d transactions archived%n", year, rows));
+            // The deleted rows only leave free pages behind until the file is rebuilt
+            DatabaseConnection.vacuum();
+            System.out.printf("Archived %,d transactions in %d ms; %s went from %,d to %,d KB.%n", result.getRows(),
+                    result.getElapsedMillis(), file.getFileName(), sizeBefore / 1024, Files.size(file) / 1024);
+            return OK;
+        } catch (SQLException | IOException e) {
+            System.err.println("Could not archive transactions: " + e.getMessage());
+            return FAILED;
+        }
+    }
+
+    private static int loadTest(Map<String, String> options) {
+        if (!options.containsKey("--user") || !options.containsKey("--password")) {
+            return usage("loadtest needs --user and --password");
+        }
+        LoadGenerator generator;
+        try {
+            int writes = Integer.parseInt(options.getOrDefault("--writes", "10"));
+            if (writes < 0 || writes > 100) {
+                return usage("--writes must be a percentage");
+            }
+            generator = new LoadGenerator(URI.create(options.getOrDefault("--url", "http://127.0.0.1:8080/")),
+                    options.get("--user"), options.get("--password"),
+                    Integer.parseInt(options.getOrDefault("--threads", "16")),
+                    Duration.ofSeconds(Integer.parseInt(options.getOrDefault("--seconds", "30"))),
+                    Duration.ofSeconds(Integer.parseInt(options.getOrDefault("--warmup", "5"))), writes);
+        } catch (IllegalArgumentException e) {
+            return usage("Bad loadtest option: " + e.getMessage());
+        }
+        try {
+            generator.run().print(System.out);
+            return OK;
+        } catch (IOException e) {
+            System.err.println("Load test failed: " + e.getMessage());
+            return FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED;
+        }
+    }
+
+    private static long sinceJvmStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+
+    private static int usage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println("""
+            Usage: pfms <command> --user NAME [options]
+              report [--month YYYY-MM]   Income, expenses and net for a month and overall, expenses by category
+              import FILE                Import a CSV or OFX statement
+              export [--out FILE] [--format csv|ndjson] [--gzip]
+                                         Stream the ledger as CSV or NDJSON (stdout by default); the format
+                                         follows the file name (.csv, .ndjson, .jsonl, optionally .gz)
+              serve [--port 8080] [--bind 127.0.0.1]
+                                         Serve the JSON API until stopped (--user not needed)
+              verify                     Check the summary totals (by type, month and category) against the ledger
+              rebuild-rollups            Recompute the monthly rollup table from the ledger (--user not needed)
+              archive [--years 2]        Move transactions older than that many full years before this one into
+                                         one file per year next to the database (--user not needed)
+              loadtest --password PW [--url http://127.0.0.1:8080/] [--threads 16] [--seconds 30]
+                       [--warmup 5] [--writes 10]
+                                         Load a running server and print requests/s and p99 latency
+            Options:
+              --db FILE                  Database file (default pfms.db, or -Dpfms.db.path)
+              --timing                   Print start-up and total time, and per-method timings, to stderr
+            Without a command the desktop application starts.""");
+        return error == null ? OK : USAGE;
+    }
+}
@@ -1,11 +1,13 @@
 package main;
 
-import gui.PFMSApp;
-import javafx.application.Application;
-
 public class Main {
     public static void main(String[] args) {
+        // Subcommands run headless; nothing on that path may touch a javafx.* class
+        if (args.length > 0 && HeadlessCli.isCommand(args[0])) {
+            System.exit(HeadlessCli.run(args));
+        }
+
         // Launch the JavaFX application
-        Application.launch(PFMSApp.class, args);
+        GuiLauncher.launch(args);
     }
 }
@@ -0,0 +1,44 @@
+package managers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs manager calls on a small pool of background threads and returns
+ * CompletableFutures, so callers such as the UI never block on JDBC.
+ * The pool size comes from the pfms.async.threads system property.
+ *
+ * This class has no JavaFX dependency; the UI publishes results back to the
+ * FX Application Thread itself (see gui.FxTaskRunner).
+ */
+public class AsyncService {
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Integer.getInteger("pfms.async.threads", 4), new DaemonThreadFactory());
+
+    private AsyncService() {
+    }
+
+    public static <T> CompletableFuture<T> supply(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, EXECUTOR);
+    }
+
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pfms-db-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package managers;
 
 import database.DatabaseConnection;
+import models.Money;
+import util.Metrics;
+import util.OperationStats;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -11,36 +14,63 @@ import java.util.Map;
 
 public class BudgetManager {
 
-    public void setBudget(int userId, String category, double amount) {
+    // Timings of the public methods, published over JMX as pfms:type=BudgetManager,name=<method>
+    private static final OperationStats SET_BUDGET = Metrics.operation("BudgetManager", "setBudget");
+    private static final OperationStats GET_BUDGETS = Metrics.operation("BudgetManager", "getBudgets");
+
+    /**
+     * Stores the budget of a category, replacing any earlier one.
+     *
+     * @throws SQLException if it could not be stored, so callers do not act on a budget that is not there
+     */
+    public void setBudget(int userId, String category, Money amount) throws SQLException {
+        long start = System.nanoTime();
         String query = """
-            INSERT INTO Budgets (userId, category, amount)
+            INSERT INTO Budgets (userId, categoryId, amountCents)
             VALUES (?, ?, ?)
-            ON CONFLICT(userId, category)
-            DO UPDATE SET amount = excluded.amount
+            ON CONFLICT(userId, categoryId)
+            DO UPDATE SET amountCents = excluded.amountCents
         """;
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, userId);
-            stmt.setString(2, category);
-            stmt.setDouble(3, amount);
-            stmt.executeUpdate();
+        try {
+            int categoryId = DatabaseConnection.getCategories().idOf(category);
+            DatabaseConnection.getWriteQueue().execute(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setInt(1, userId);
+                    stmt.setInt(2, categoryId);
+                    stmt.setLong(3, amount.getCents());
+                    return stmt.executeUpdate();
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            SET_BUDGET.recordError(start);
+            throw e;
+        }
+        SET_BUDGET.record(start, 1);
+    }
+
+    public Map<String, Money> getBudgets(int userId) {
+        long start = System.nanoTime();
+        Map<String, Money> budgets;
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            budgets = getBudgets(conn, userId);
         } catch (SQLException e) {
-            System.err.println("Error setting budget: " + e.getMessage());
+            GET_BUDGETS.recordError(start);
+            System.err.println("Error retrieving budgets: " + e.getMessage());
+            return new HashMap<>();
         }
+        GET_BUDGETS.record(start, budgets.size());
+        return budgets;
     }
 
-    public Map<String, Double> getBudgets(int userId) {
-        Map<String, Double> budgets = new HashMap<>();
-        String query = "SELECT category, amount FROM Budgets WHERE userId = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+    Map<String, Money> getBudgets(Connection conn, int userId) throws SQLException {
+        Map<String, Money> budgets = new HashMap<>();
+        String query = "SELECT categoryId, amountCents FROM Budgets WHERE userId = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
-                budgets.put(rs.getString("category"), rs.getDouble("amount"));
+                budgets.put(DatabaseConnection.getCategories().nameOf(conn, rs.getInt("categoryId")), Money.ofCents(rs.getLong("amountCents")));
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving budgets: " + e.getMessage());
         }
         return budgets;
     }
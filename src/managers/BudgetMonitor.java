@@ -0,0 +1,273 @@
+package managers;
+
+import database.CategoryDictionary;
+import database.DatabaseConnection;
+import models.BudgetAlert;
+import models.Money;
+import models.Transaction;
+import util.DateUtils;
+import util.Metrics;
+import util.OperationStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Compares each category's expenses in the current month against its budget and raises
+ * an alert the first time spending reaches each threshold (80% and 100% by default).
+ *
+ * The month's spend per category is read once in load(); after that every add, delete
+ * and edit adjusts one counter and checks it against its budget, so the cost of a write
+ * does not depend on the size of the ledger. An alert is raised at most once per
+ * category, threshold and month, even if spending drops below it and rises again.
+ */
+public class BudgetMonitor implements TransactionListener {
+
+    private static final int[] DEFAULT_THRESHOLDS = {80, 100};
+
+    private static class Counter {
+        long spentCents;
+        long budgetCents; // 0 when the category has no budget
+        int raised; // number of thresholds already alerted this month
+    }
+
+    private static class UserBudgets {
+        final YearMonth period;
+        final Map<String, Counter> byCategory = new HashMap<>();
+
+        UserBudgets(YearMonth period) {
+            this.period = period;
+        }
+
+        Counter counter(String category) {
+            return byCategory.computeIfAbsent(category, k -> new Counter());
+        }
+    }
+
+    // Published over JMX as pfms:type=BudgetMonitor,name=load
+    private static final OperationStats LOAD = Metrics.operation("BudgetMonitor", "load");
+
+    private final BudgetManager budgetManager;
+    private final int[] thresholds;
+    private final Map<Integer, UserBudgets> users = new ConcurrentHashMap<>();
+    private final List<Consumer<BudgetAlert>> alertListeners = new CopyOnWriteArrayList<>();
+
+    public BudgetMonitor(TransactionManager transactionManager, BudgetManager budgetManager) {
+        this(transactionManager, budgetManager, DEFAULT_THRESHOLDS);
+    }
+
+    /**
+     * @param thresholds percentages of the budget that raise an alert, e.g. 50, 90, 100
+     */
+    public BudgetMonitor(TransactionManager transactionManager, BudgetManager budgetManager, int... thresholds) {
+        this.budgetManager = budgetManager;
+        this.thresholds = thresholds.clone();
+        Arrays.sort(this.thresholds);
+        transactionManager.addListener(this);
+    }
+
+    /**
+     * Alerts raised by writes are delivered on the write queue's callback thread.
+     */
+    public void addAlertListener(Consumer<BudgetAlert> listener) {
+        alertListeners.add(listener);
+    }
+
+    /**
+     * Reads the current month's spend and the budgets of a user, e.g. at login, and returns an
+     * alert for every category that has already reached a threshold, instead of sending it to the
+     * listeners. Thresholds alerted before a reload in the same month are not reported again.
+     */
+    public List<BudgetAlert> load(int userId) {
+        long start = System.nanoTime();
+        List<BudgetAlert> alerts;
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            alerts = load(conn, userId, budgetManager.getBudgets(conn, userId));
+        } catch (SQLException e) {
+            LOAD.recordError(start);
+            System.err.println("Error loading budget spend: " + e.getMessage());
+            return List.of();
+        }
+        LOAD.record(start, alerts.size());
+        return alerts;
+    }
+
+    /**
+     * Same as {@link #load(int)} with budgets already read through the caller's connection.
+     */
+    List<BudgetAlert> load(Connection conn, int userId, Map<String, Money> budgets) throws SQLException {
+        YearMonth period = YearMonth.now();
+        UserBudgets user = new UserBudgets(period);
+        String query = """
+            SELECT categoryId, totalCents AS spent
+            FROM MonthlyRollup
+            WHERE userId = ? AND type = 'Expense' AND month = ? AND dated = 1
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, userId);
+            stmt.setString(2, period.toString());
+            ResultSet rs = stmt.executeQuery();
+            CategoryDictionary categories = DatabaseConnection.getCategories();
+            while (rs.next()) {
+                user.counter(categories.nameOf(conn, rs.getInt("categoryId"))).spentCents = rs.getLong("spent");
+            }
+        }
+        budgets.forEach((category, amount) -> user.counter(category).budgetCents = amount.getCents());
+        UserBudgets previous = users.get(userId);
+        if (previous != null && previous.period.equals(period)) {
+            // A reload within the same month keeps the alerts already raised
+            synchronized (previous) {
+                previous.byCategory.forEach((category, counter) -> user.counter(category).raised = counter.raised);
+            }
+        }
+
+        List<BudgetAlert> alerts = new ArrayList<>();
+        synchronized (user) {
+            user.byCategory.forEach((category, counter) -> {
+                BudgetAlert alert = check(userId, user, category, counter);
+                if (alert != null) {
+                    alerts.add(alert);
+                }
+            });
+        }
+        users.put(userId, user);
+        return alerts;
+    }
+
+    public void evict(int userId) {
+        users.remove(userId);
+    }
+
+    /**
+     * Applies a budget that was just saved with BudgetManager.setBudget. Lowering a budget
+     * below the month's spend raises the alert straight away.
+     */
+    public void onBudgetSet(int userId, String category, Money amount) {
+        UserBudgets user = users.get(userId);
+        if (user == null) {
+            return;
+        }
+        BudgetAlert alert;
+        synchronized (user) {
+            Counter counter = user.counter(category);
+            counter.budgetCents = amount.getCents();
+            alert = check(userId, user, category, counter);
+        }
+        publish(alert);
+    }
+
+    /**
+     * The category's expenses in the current month, from the in-memory counter.
+     */
+    public Money getSpent(int userId, String category) {
+        UserBudgets user = users.get(userId);
+        if (user == null) {
+            return Money.ZERO;
+        }
+        synchronized (user) {
+            Counter counter = user.byCategory.get(category);
+            return Money.ofCents(counter == null ? 0 : counter.spentCents);
+        }
+    }
+
+    @Override
+    public void onTransactionAdded(int userId, Transaction transaction) {
+        UserBudgets user = current(userId);
+        if (user != null) {
+            apply(userId, user, transaction, 1);
+        }
+    }
+
+    @Override
+    public void onTransactionDeleted(int userId, Transaction transaction) {
+        UserBudgets user = current(userId);
+        if (user != null) {
+            apply(userId, user, transaction, -1);
+        }
+    }
+
+    @Override
+    public void onTransactionUpdated(int userId, Transaction before, Transaction after) {
+        UserBudgets user = current(userId);
+        if (user != null) {
+            apply(userId, user, before, -1);
+            apply(userId, user, after, 1);
+        }
+    }
+
+    @Override
+    public void onTransactionsReplaced(int userId) {
+        UserBudgets user = users.get(userId);
+        if (user != null) {
+            load(userId).forEach(this::publish);
+        }
+    }
+
+    // Returns the counters to apply a write to, or null if the user is not loaded. When a new
+    // month has started the counters and alerts start over; the reload already includes the write.
+    private UserBudgets current(int userId) {
+        UserBudgets user = users.get(userId);
+        if (user != null && !user.period.equals(YearMonth.now())) {
+            load(userId).forEach(this::publish);
+            return null;
+        }
+        return user;
+    }
+
+    private void apply(int userId, UserBudgets user, Transaction transaction, int sign) {
+        if (!"Expense".equals(transaction.getType())) {
+            return;
+        }
+        LocalDate date = DateUtils.parse(transaction.getDate());
+        if (date == null || date.getYear() != user.period.getYear()
+                || date.getMonthValue() != user.period.getMonthValue()) {
+            return;
+        }
+        BudgetAlert alert;
+        synchronized (user) {
+            Counter counter = user.counter(transaction.getDescription());
+            counter.spentCents += sign * transaction.getAmount().getCents();
+            alert = check(userId, user, transaction.getDescription(), counter);
+        }
+        publish(alert);
+    }
+
+    // Returns an alert for the highest threshold newly reached, or null. Crossing several
+    // thresholds in one write raises only the highest of them.
+    private BudgetAlert check(int userId, UserBudgets user, String category, Counter counter) {
+        if (counter.budgetCents <= 0) {
+            return null;
+        }
+        int reached = 0;
+        while (reached < thresholds.length && counter.spentCents * 100 >= counter.budgetCents * thresholds[reached]) {
+            reached++;
+        }
+        if (reached <= counter.raised) {
+            return null;
+        }
+        counter.raised = reached;
+        return new BudgetAlert(userId, category, user.period.toString(), thresholds[reached - 1],
+                Money.ofCents(counter.spentCents), Money.ofCents(counter.budgetCents));
+    }
+
+    private void publish(BudgetAlert alert) {
+        if (alert == null) {
+            return;
+        }
+        for (Consumer<BudgetAlert> listener : alertListeners) {
+            listener.accept(alert);
+        }
+    }
+}
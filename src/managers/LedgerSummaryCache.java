@@ -0,0 +1,312 @@
+package managers;
+
+import database.CategoryDictionary;
+import database.DatabaseConnection;
+import database.MonthlyRollup;
+import database.TransactionArchive;
+import models.Money;
+import models.Transaction;
+import util.DateUtils;
+import util.Metrics;
+import util.OperationStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory totals per user (by type, by month and by category), loaded once
+ * from the MonthlyRollup table and then kept current with constant-time deltas
+ * from TransactionManager's add, update and delete events.
+ *
+ * Every bucket keeps a row count next to its total so it disappears once its
+ * last transaction is deleted instead of lingering as a 0.00 entry.
+ *
+ * verify() recomputes the totals from the transactions themselves, so it also catches
+ * a stale rollup. It can be run on demand over JMX as pfms:type=LedgerSummaryCache, or
+ * with the headless verify command.
+ */
+public class LedgerSummaryCache implements TransactionListener, LedgerSummaryCacheMBean {
+
+    private static class Bucket {
+        long totalCents;
+        int count;
+    }
+
+    private static class UserSummary {
+        final Map<String, Bucket> byType = new HashMap<>();
+        final Map<String, Map<String, Bucket>> byMonth = new HashMap<>();
+        // Keyed by category id; names are only looked up when a caller asks for the totals
+        final Map<String, Map<Integer, Bucket>> byCategory = new HashMap<>();
+
+        synchronized void apply(String type, String month, int categoryId, long amountCents, int count) {
+            adjust(byType, type, amountCents, count);
+            adjust(byMonth.computeIfAbsent(type, k -> new HashMap<>()), month, amountCents, count);
+            adjust(byCategory.computeIfAbsent(type, k -> new HashMap<>()), categoryId, amountCents, count);
+        }
+
+        synchronized void apply(Transaction transaction, int categoryId, int sign) {
+            apply(transaction.getType(), DateUtils.monthKey(transaction.getDate()), categoryId,
+                    sign * transaction.getAmount().getCents(), sign);
+        }
+
+        private static <K> void adjust(Map<K, Bucket> buckets, K key, long amountCents, int count) {
+            Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+            bucket.totalCents += amountCents;
+            bucket.count += count;
+            if (bucket.count <= 0) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    // Timings of the public methods, published over JMX as pfms:type=LedgerSummaryCache,name=<method>
+    private static final OperationStats LOAD = Metrics.operation("LedgerSummaryCache", "load");
+    private static final OperationStats GET_TOTALS_BY_TYPE = Metrics.operation("LedgerSummaryCache", "getTotalsByType");
+    private static final OperationStats GET_MONTHLY_TOTALS = Metrics.operation("LedgerSummaryCache", "getMonthlyTotals");
+    private static final OperationStats GET_CATEGORY_TOTALS = Metrics.operation("LedgerSummaryCache", "getCategoryTotals");
+    private static final OperationStats VERIFY = Metrics.operation("LedgerSummaryCache", "verify");
+
+    private final Map<Integer, UserSummary> summaries = new ConcurrentHashMap<>();
+
+    public LedgerSummaryCache(TransactionManager transactionManager) {
+        transactionManager.addListener(this);
+        Metrics.register("pfms:type=LedgerSummaryCache", this);
+    }
+
+    @Override
+    public int getCachedUsers() {
+        return summaries.size();
+    }
+
+    /**
+     * Builds (or rebuilds) the summary for a user from the database, e.g. at login.
+     * A write that commits while the summary is being read can be missed; verify() detects that.
+     */
+    public void load(int userId) {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            load(conn, userId);
+        } catch (SQLException e) {
+            LOAD.recordError(start);
+            System.err.println("Error loading ledger summary: " + e.getMessage());
+            return;
+        }
+        LOAD.record(start, 0);
+    }
+
+    /**
+     * Same as {@link #load(int)}, reading through a connection the caller holds, e.g. inside a read transaction.
+     */
+    void load(Connection conn, int userId) throws SQLException {
+        summaries.put(userId, readSummary(conn, userId));
+    }
+
+    public void evict(int userId) {
+        summaries.remove(userId);
+    }
+
+    public Map<String, Money> getTotalsByType(int userId) {
+        long start = System.nanoTime();
+        UserSummary summary = summaryFor(userId);
+        Map<String, Money> totals;
+        synchronized (summary) {
+            totals = totalsOf(summary.byType, new HashMap<>());
+        }
+        GET_TOTALS_BY_TYPE.record(start, totals.size());
+        return totals;
+    }
+
+    public Map<String, Money> getMonthlyTotals(int userId, String type) {
+        long start = System.nanoTime();
+        UserSummary summary = summaryFor(userId);
+        Map<String, Money> totals;
+        synchronized (summary) {
+            totals = totalsOf(summary.byMonth.getOrDefault(type, Map.of()), new TreeMap<>());
+        }
+        GET_MONTHLY_TOTALS.record(start, totals.size());
+        return totals;
+    }
+
+    public Map<String, Money> getCategoryTotals(int userId, String type) {
+        long start = System.nanoTime();
+        UserSummary summary = summaryFor(userId);
+        Map<Integer, Money> byId;
+        synchronized (summary) {
+            byId = totalsOf(summary.byCategory.getOrDefault(type, Map.of()), new HashMap<>());
+        }
+        Map<String, Money> totals = new HashMap<>();
+        try {
+            CategoryDictionary categories = DatabaseConnection.getCategories();
+            for (Map.Entry<Integer, Money> entry : byId.entrySet()) {
+                totals.put(categories.nameOf(entry.getKey()), entry.getValue());
+            }
+        } catch (SQLException e) {
+            GET_CATEGORY_TOTALS.recordError(start);
+            System.err.println("Error resolving category names: " + e.getMessage());
+            return totals;
+        }
+        GET_CATEGORY_TOTALS.record(start, totals.size());
+        return totals;
+    }
+
+    /**
+     * Compares the cached totals with totals recomputed from Transactions and the archived years,
+     * and returns a description of every bucket that differs. An empty list means the cache is consistent.
+     */
+    @Override
+    public List<String> verify(int userId) {
+        long start = System.nanoTime();
+        UserSummary cached = summaryFor(userId);
+        UserSummary actual;
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            actual = readSummary(conn, MonthlyRollup.computedFor(TransactionArchive.attachAll(conn)), userId);
+        } catch (SQLException e) {
+            VERIFY.recordError(start);
+            return List.of("could not read the database: " + e.getMessage());
+        }
+        List<String> mismatches = new ArrayList<>();
+        synchronized (cached) {
+            compare("type", cached.byType, actual.byType, mismatches);
+            for (String type : union(cached.byMonth.keySet(), actual.byMonth.keySet())) {
+                compare(type + " month", cached.byMonth.getOrDefault(type, Map.of()),
+                        actual.byMonth.getOrDefault(type, Map.of()), mismatches);
+                compare(type + " category", cached.byCategory.getOrDefault(type, Map.of()),
+                        actual.byCategory.getOrDefault(type, Map.of()), mismatches);
+            }
+        }
+        VERIFY.record(start, mismatches.size());
+        return mismatches;
+    }
+
+    @Override
+    public void onTransactionAdded(int userId, Transaction transaction) {
+        UserSummary summary = summaries.get(userId);
+        if (summary != null) {
+            int categoryId = categoryIdOf(userId, transaction);
+            if (categoryId >= 0) {
+                summary.apply(transaction, categoryId, 1);
+            }
+        }
+    }
+
+    @Override
+    public void onTransactionDeleted(int userId, Transaction transaction) {
+        UserSummary summary = summaries.get(userId);
+        if (summary != null) {
+            int categoryId = categoryIdOf(userId, transaction);
+            if (categoryId >= 0) {
+                summary.apply(transaction, categoryId, -1);
+            }
+        }
+    }
+
+    @Override
+    public void onTransactionUpdated(int userId, Transaction before, Transaction after) {
+        UserSummary summary = summaries.get(userId);
+        if (summary != null) {
+            int beforeId = categoryIdOf(userId, before);
+            int afterId = categoryIdOf(userId, after);
+            if (beforeId >= 0 && afterId >= 0) {
+                synchronized (summary) {
+                    summary.apply(before, beforeId, -1);
+                    summary.apply(after, afterId, 1);
+                }
+            }
+        }
+    }
+
+    // The row was just written, so its category is in the dictionary; if the lookup still
+    // fails the summary is dropped and rebuilt on the next read rather than left wrong
+    private int categoryIdOf(int userId, Transaction transaction) {
+        try {
+            int id = DatabaseConnection.getCategories().find(transaction.getDescription());
+            if (id >= 0) {
+                return id;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error resolving category: " + e.getMessage());
+        }
+        evict(userId);
+        return -1;
+    }
+
+    @Override
+    public void onTransactionsReplaced(int userId) {
+        if (summaries.containsKey(userId)) {
+            load(userId);
+        }
+    }
+
+    private UserSummary summaryFor(int userId) {
+        return summaries.computeIfAbsent(userId, this::readSummary);
+    }
+
+    private UserSummary readSummary(int userId) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return readSummary(conn, userId);
+        } catch (SQLException e) {
+            System.err.println("Error loading ledger summary: " + e.getMessage());
+        }
+        return new UserSummary();
+    }
+
+    // The trigger-maintained rollup already holds every (type, month, categoryId) bucket; the three views are folded from it
+    private UserSummary readSummary(Connection conn, int userId) throws SQLException {
+        return readSummary(conn, "SELECT type, month, categoryId, totalCents, rowCount FROM MonthlyRollup WHERE userId = ?",
+                userId);
+    }
+
+    // Folds rows with the rollup's type, month, categoryId, totalCents and rowCount columns, filtered by user
+    private UserSummary readSummary(Connection conn, String query, int userId) throws SQLException {
+        UserSummary summary = new UserSummary();
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                summary.apply(rs.getString("type"), rs.getString("month"), rs.getInt("categoryId"),
+                        rs.getLong("totalCents"), rs.getInt("rowCount"));
+            }
+        }
+        return summary;
+    }
+
+    private static <K, M extends Map<K, Money>> M totalsOf(Map<K, Bucket> buckets, M target) {
+        buckets.forEach((key, bucket) -> target.put(key, Money.ofCents(bucket.totalCents)));
+        return target;
+    }
+
+    private static <K> void compare(String label, Map<K, Bucket> cached, Map<K, Bucket> actual,
+                                    List<String> mismatches) {
+        for (K key : union(cached.keySet(), actual.keySet())) {
+            Bucket c = cached.get(key);
+            Bucket a = actual.get(key);
+            Money cachedTotal = Money.ofCents(c == null ? 0 : c.totalCents);
+            Money actualTotal = Money.ofCents(a == null ? 0 : a.totalCents);
+            int cachedCount = c == null ? 0 : c.count;
+            int actualCount = a == null ? 0 : a.count;
+            if (cachedCount != actualCount || !cachedTotal.equals(actualTotal)) {
+                mismatches.add(String.format("%s %s: cached %s (%d rows), database %s (%d rows)",
+                        label, key, cachedTotal, cachedCount, actualTotal, actualCount));
+            }
+        }
+    }
+
+    private static <K> List<K> union(Set<K> a, Set<K> b) {
+        List<K> keys = new ArrayList<>(a);
+        for (K key : b) {
+            if (!a.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,16 @@
+package managers;
+
+import java.util.List;
+
+/**
+ * JMX view of the ledger summary cache, so its consistency can be checked while the application runs.
+ */
+public interface LedgerSummaryCacheMBean {
+
+    int getCachedUsers();
+
+    /**
+     * See {@link LedgerSummaryCache#verify(int)}. A user that is not cached yet is loaded first.
+     */
+    List<String> verify(int userId);
+}
@@ -0,0 +1,75 @@
+package managers;
+
+import database.DatabaseConnection;
+import models.BudgetAlert;
+import models.Money;
+import models.SessionSnapshot;
+import models.UserProfile;
+import util.Metrics;
+import util.OperationStats;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads what the dashboard needs after login in one read transaction on one pooled connection:
+ * the budgets, the ledger summary, the current month's budget counters and the row count.
+ * In WAL mode every query in the transaction reads the same snapshot, so the totals, budgets and
+ * table size agree even while another process is writing.
+ */
+public class SessionLoader {
+
+    // Published over JMX as pfms:type=SessionLoader,name=load; rows is the user's transaction count
+    private static final OperationStats LOAD = Metrics.operation("SessionLoader", "load");
+
+    private final TransactionManager transactionManager;
+    private final BudgetManager budgetManager;
+    private final LedgerSummaryCache summaryCache;
+    private final BudgetMonitor budgetMonitor;
+
+    public SessionLoader(TransactionManager transactionManager, BudgetManager budgetManager,
+                         LedgerSummaryCache summaryCache, BudgetMonitor budgetMonitor) {
+        this.transactionManager = transactionManager;
+        this.budgetManager = budgetManager;
+        this.summaryCache = summaryCache;
+        this.budgetMonitor = budgetMonitor;
+    }
+
+    /**
+     * Fills the summary cache and budget monitor for the user and returns the rest of the first frame.
+     * Must not be called on the FX Application Thread.
+     */
+    public SessionSnapshot load(UserProfile profile) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            SessionSnapshot snapshot = read(profile);
+            LOAD.record(start, snapshot.getTransactionCount());
+            return snapshot;
+        } catch (SQLException | RuntimeException e) {
+            LOAD.recordError(start);
+            throw e;
+        }
+    }
+
+    private SessionSnapshot read(UserProfile profile) throws SQLException {
+        int userId = profile.getId();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<String, Money> budgets = budgetManager.getBudgets(conn, userId);
+                summaryCache.load(conn, userId);
+                List<BudgetAlert> alerts = budgetMonitor.load(conn, userId, budgets);
+                int transactionCount = transactionManager.countTransactions(conn, userId);
+                conn.commit();
+                return new SessionSnapshot(profile, budgets, alerts, transactionCount);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
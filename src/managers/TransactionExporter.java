@@ -0,0 +1,352 @@
+package managers;
+
+import database.CategoryDictionary;
+import database.DatabaseConnection;
+import models.TransactionFilter;
+import util.Metrics;
+import util.OperationStats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a user's transactions to a file or channel as CSV or newline-delimited JSON.
+ *
+ * Rows come straight from forward-only ResultSets, one per TransactionSegment, and are encoded
+ * into a single reused buffer that is written to the channel whenever it fills, so no Transaction
+ * objects or row lists are built and the heap used stays the same for ten rows or ten million.
+ * The queries run in one read transaction, so the export is a consistent snapshot even while
+ * other users keep writing.
+ *
+ * The CSV has the date, description, amount and type header TransactionImporter reads.
+ */
+public class TransactionExporter {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * The format a file name asks for: .ndjson or .jsonl (optionally followed by .gz) is NDJSON,
+         * anything else CSV.
+         */
+        public static Format of(Path file) {
+            String name = stripGzip(file.getFileName().toString().toLowerCase(Locale.ROOT));
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    public interface ExportListener {
+        void onProgress(ExportProgress progress);
+    }
+
+    public static class ExportProgress {
+        private final long rowsWritten;
+        private final long bytesWritten;
+        private final long elapsedNanos;
+        private final boolean finished;
+
+        ExportProgress(long rowsWritten, long bytesWritten, long elapsedNanos, boolean finished) {
+            this.rowsWritten = rowsWritten;
+            this.bytesWritten = bytesWritten;
+            this.elapsedNanos = elapsedNanos;
+            this.finished = finished;
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        /**
+         * Bytes of CSV or JSON produced, before any compression.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+
+        public double getRowsPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds == 0 ? 0 : rowsWritten / seconds;
+        }
+
+        public double getMegabytesPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds == 0 ? 0 : bytesWritten / seconds / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d exported (%,.0f rows/sec, %.1f MB/s)",
+                    rowsWritten, getRowsPerSecond(), getMegabytesPerSecond());
+        }
+    }
+
+    // Hint for how many rows the driver reads per step; sqlite-jdbc steps one row at a time regardless
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int PROGRESS_EVERY_ROWS = 50_000;
+
+    // Published over JMX as pfms:type=TransactionExporter,name=export; rows are the rows written
+    private static final OperationStats EXPORT = Metrics.operation("TransactionExporter", "export");
+
+    /**
+     * Writes the matching transactions to {@code file}, replacing it. The format follows the file
+     * name (see {@link Format#of}) and a name ending in .gz is gzip-compressed.
+     */
+    public ExportProgress exportFile(int userId, TransactionFilter filter, Path file, ExportListener listener)
+            throws IOException, SQLException {
+        boolean gzip = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+        return exportFile(userId, filter, file, Format.of(file), gzip, listener);
+    }
+
+    public ExportProgress exportFile(int userId, TransactionFilter filter, Path file, Format format, boolean gzip,
+                                     ExportListener listener) throws IOException, SQLException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return export(userId, filter, format, gzip, channel, listener);
+        }
+    }
+
+    /**
+     * Writes the matching transactions, newest first, to {@code out}. The channel is not closed,
+     * so it can be e.g. standard output.
+     */
+    public ExportProgress export(int userId, TransactionFilter filter, Format format, boolean gzip,
+                                 WritableByteChannel out, ExportListener listener) throws IOException, SQLException {
+        long start = System.nanoTime();
+        try {
+            ExportProgress result = runExport(userId, filter, format, gzip, out, listener, start);
+            EXPORT.record(start, result.getRowsWritten());
+            return result;
+        } catch (IOException | SQLException | RuntimeException e) {
+            EXPORT.recordError(start);
+            throw e;
+        }
+    }
+
+    private ExportProgress runExport(int userId, TransactionFilter filter, Format format, boolean gzip,
+                                     WritableByteChannel out, ExportListener listener, long start)
+            throws IOException, SQLException {
+        CategoryDictionary categories = DatabaseConnection.getCategories();
+        ChannelWriter writer = new ChannelWriter(gzip ? new GzipChannel(out) : out);
+        StringBuilder line = new StringBuilder(256);
+        long rows = 0;
+        if (format == Format.CSV) {
+            writer.write("date,description,amount,type\n");
+        }
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            // Built before the read transaction starts, since attaching an archive cannot happen inside one
+            List<TransactionSegment> segments = TransactionSegment.of(conn, filter);
+            List<String> queries = new ArrayList<>();
+            for (TransactionSegment segment : segments) {
+                queries.add(segment.select(conn, "id, date, categoryId, amountCents, type, epochDay", null)
+                        + TransactionSegment.NEWEST_FIRST);
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (int i = 0; i < segments.size(); i++) {
+                    try (PreparedStatement stmt = conn.prepareStatement(queries.get(i), ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY)) {
+                        stmt.setFetchSize(FETCH_SIZE);
+                        segments.get(i).bind(stmt, 1, userId, null);
+                        rows = writeRows(stmt, format, categories, writer, line, rows, listener, start);
+                    }
+                }
+                conn.commit();
+            } catch (IOException | SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        writer.finish();
+        ExportProgress result = new ExportProgress(rows, writer.bytesWritten, System.nanoTime() - start, true);
+        if (listener != null) {
+            listener.onProgress(result);
+        }
+        return result;
+    }
+
+    // Writes the statement's rows and returns the running row count
+    private long writeRows(PreparedStatement stmt, Format format, CategoryDictionary categories, ChannelWriter writer,
+                           StringBuilder line, long rows, ExportListener listener, long start)
+            throws IOException, SQLException {
+        Connection conn = stmt.getConnection();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                line.setLength(0);
+                String category = categories.nameOf(conn, rs.getInt(3));
+                if (format == Format.CSV) {
+                    appendCsv(line, rs.getString(2)).append(',');
+                    appendCsv(line, category).append(',');
+                    appendAmount(line, rs.getLong(4)).append(',');
+                    appendCsv(line, rs.getString(5)).append('\n');
+                } else {
+                    line.append("{\"id\":").append(rs.getInt(1)).append(",\"date\":");
+                    appendJson(line, rs.getString(2)).append(",\"description\":");
+                    appendJson(line, category).append(",\"amount\":");
+                    appendAmount(line, rs.getLong(4)).append(",\"type\":");
+                    appendJson(line, rs.getString(5)).append("}\n");
+                }
+                writer.write(line);
+                if (++rows % PROGRESS_EVERY_ROWS == 0 && listener != null) {
+                    listener.onProgress(new ExportProgress(rows, writer.bytesWritten,
+                            System.nanoTime() - start, false));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static String stripGzip(String name) {
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    private static StringBuilder appendCsv(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return out.append(value);
+        }
+        return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    // Same escaping as server.Json, which this package does not depend on
+    private static StringBuilder appendJson(StringBuilder out, String value) {
+        if (value == null) {
+            return out.append("null");
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.append('"');
+    }
+
+    // Same text as Money.toString(), e.g. -12.05, without a BigDecimal per row
+    private static StringBuilder appendAmount(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+        }
+        long abs = Math.abs(cents);
+        out.append(abs / 100).append('.');
+        if (abs % 100 < 10) {
+            out.append('0');
+        }
+        return out.append(abs % 100);
+    }
+
+    // Encodes text as UTF-8 into one fixed buffer and writes it to the channel each time it fills
+    private static class ChannelWriter {
+        private final WritableByteChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long bytesWritten;
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        // Callers pass whole lines, so a surrogate pair is never split between two calls
+        void write(CharSequence text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    return;
+                } else {
+                    result.throwException();
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            drain();
+            if (channel instanceof GzipChannel) {
+                ((GzipChannel) channel).finish();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            bytesWritten += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Compresses into the target channel; finish() writes the gzip trailer but leaves the target open
+    private static class GzipChannel implements WritableByteChannel {
+        private final GZIPOutputStream gzip;
+        private final WritableByteChannel channel;
+
+        GzipChannel(WritableByteChannel target) throws IOException {
+            gzip = new GZIPOutputStream(Channels.newOutputStream(target), BUFFER_SIZE);
+            channel = Channels.newChannel(gzip);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        void finish() throws IOException {
+            gzip.finish();
+            gzip.flush();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+    }
+}
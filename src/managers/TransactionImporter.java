@@ -0,0 +1,580 @@
+package managers;
+
+import database.CategoryDictionary;
+import database.DatabaseConnection;
+import models.Money;
+import util.DateUtils;
+import util.Metrics;
+import util.OperationStats;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams a bank statement (CSV or OFX) into the Transactions table.
+ *
+ * A parser thread reads and validates rows and hands them over in chunks
+ * through a small bounded queue; the calling thread inserts each chunk with
+ * JDBC batching inside a single transaction. Rows that fail validation are
+ * written to a rejects file next to the input instead of aborting the import.
+ *
+ * CSV files need a header row with date, description (or category) and
+ * amount columns; a type column is optional, and without it negative amounts
+ * are imported as expenses and positive amounts as income.
+ */
+public class TransactionImporter {
+
+    public interface ImportListener {
+        void onProgress(ImportProgress progress);
+    }
+
+    public static class ImportProgress {
+        private final long rowsRead;
+        private final long rowsImported;
+        private final long rowsRejected;
+        private final long bytesRead;
+        private final long totalBytes;
+        private final long elapsedNanos;
+        private final boolean finished;
+        private final Path rejectsFile;
+
+        ImportProgress(long rowsRead, long rowsImported, long rowsRejected, long bytesRead, long totalBytes,
+                       long elapsedNanos, boolean finished, Path rejectsFile) {
+            this.rowsRead = rowsRead;
+            this.rowsImported = rowsImported;
+            this.rowsRejected = rowsRejected;
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.elapsedNanos = elapsedNanos;
+            this.finished = finished;
+            this.rejectsFile = rejectsFile;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getRowsImported() {
+            return rowsImported;
+        }
+
+        public long getRowsRejected() {
+            return rowsRejected;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Path of the rejects file, or null when every row was accepted.
+         */
+        public Path getRejectsFile() {
+            return rejectsFile;
+        }
+
+        public double getFractionDone() {
+            return totalBytes <= 0 ? 0 : Math.min(1.0, (double) bytesRead / totalBytes);
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+
+        public double getRowsPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds == 0 ? 0 : rowsImported / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d imported, %,d rejected (%.0f%%, %,.0f rows/sec)",
+                    rowsImported, rowsRejected, getFractionDone() * 100, getRowsPerSecond());
+        }
+    }
+
+    private static class ParsedRow {
+        final String date;
+        final int epochDay;
+        final String category;
+        final long amountCents;
+        final String type;
+
+        ParsedRow(String date, int epochDay, String category, long amountCents, String type) {
+            this.date = date;
+            this.epochDay = epochDay;
+            this.category = category;
+            this.amountCents = amountCents;
+            this.type = type;
+        }
+    }
+
+    private static class RowRejectedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RowRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    // Marks the end of the parsed stream on the hand-off queue
+    private static final List<ParsedRow> END_OF_INPUT = new ArrayList<>();
+
+    private static final int DEFAULT_CHUNK_SIZE = 10_000;
+    private static final String INSERT_QUERY =
+            "INSERT INTO Transactions (userId, amountCents, categoryId, date, epochDay, type) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Published over JMX as pfms:type=TransactionImporter,name=importFile; rows are the rows imported
+    private static final OperationStats IMPORT_FILE = Metrics.operation("TransactionImporter", "importFile");
+
+    private final int chunkSize;
+
+    public TransactionImporter() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public TransactionImporter(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportProgress importFile(int userId, Path file, ImportListener listener) throws IOException, SQLException {
+        long start = System.nanoTime();
+        try {
+            ImportProgress result = runImport(userId, file, listener, start);
+            IMPORT_FILE.record(start, result.getRowsImported());
+            return result;
+        } catch (IOException | SQLException | RuntimeException e) {
+            IMPORT_FILE.recordError(start);
+            throw e;
+        }
+    }
+
+    private ImportProgress runImport(int userId, Path file, ImportListener listener, long start)
+            throws IOException, SQLException {
+        long totalBytes = Files.size(file);
+        Path rejectsFile = file.resolveSibling(file.getFileName() + ".rejected.csv");
+        boolean ofx = isOfx(file);
+
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicLong rowsRead = new AtomicLong();
+        AtomicLong rowsRejected = new AtomicLong();
+        BlockingQueue<List<ParsedRow>> chunks = new ArrayBlockingQueue<>(4);
+        AtomicReference<Exception> parseFailure = new AtomicReference<>();
+
+        Thread parser = new Thread(() -> {
+            try (InputStream in = new CountingInputStream(Files.newInputStream(file), bytesRead);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+                 RejectsWriter rejects = new RejectsWriter(rejectsFile)) {
+                if (ofx) {
+                    parseOfx(reader, chunks, rowsRead, rowsRejected, rejects);
+                } else {
+                    parseCsv(reader, chunks, rowsRead, rowsRejected, rejects);
+                }
+            } catch (Exception e) {
+                parseFailure.set(e);
+            } finally {
+                putQuietly(chunks, END_OF_INPUT);
+            }
+        }, "pfms-import-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        long rowsImported = 0;
+        try {
+            while (true) {
+                List<ParsedRow> chunk = chunks.take();
+                if (chunk == END_OF_INPUT) {
+                    break;
+                }
+                insertChunk(userId, chunk);
+                rowsImported += chunk.size();
+                if (listener != null) {
+                    listener.onProgress(new ImportProgress(rowsRead.get(), rowsImported, rowsRejected.get(),
+                            bytesRead.get(), totalBytes, System.nanoTime() - start, false, null));
+                }
+            }
+            parser.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted after " + rowsImported + " rows", e);
+        } finally {
+            // Unblocks the parser if the insert side stopped early
+            chunks.clear();
+            parser.interrupt();
+        }
+
+        Exception failure = parseFailure.get();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IOException("Import failed: " + failure.getMessage(), failure);
+        }
+
+        ImportProgress result = new ImportProgress(rowsRead.get(), rowsImported, rowsRejected.get(),
+                totalBytes, totalBytes, System.nanoTime() - start, true,
+                rowsRejected.get() > 0 ? rejectsFile : null);
+        if (listener != null) {
+            listener.onProgress(result);
+        }
+        return result;
+    }
+
+    private void insertChunk(int userId, List<ParsedRow> chunk) throws SQLException {
+        // New categories are added before the chunk's transaction opens, see CategoryDictionary.idOf
+        CategoryDictionary categories = DatabaseConnection.getCategories();
+        List<String> names = new ArrayList<>(chunk.size());
+        for (ParsedRow row : chunk) {
+            names.add(row.category);
+        }
+        categories.addAll(names);
+        int[] categoryIds = new int[chunk.size()];
+        for (int i = 0; i < categoryIds.length; i++) {
+            categoryIds[i] = categories.idOf(chunk.get(i).category);
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_QUERY)) {
+                for (int i = 0; i < categoryIds.length; i++) {
+                    ParsedRow row = chunk.get(i);
+                    stmt.setInt(1, userId);
+                    stmt.setLong(2, row.amountCents);
+                    stmt.setInt(3, categoryIds[i]);
+                    stmt.setString(4, row.date);
+                    stmt.setInt(5, row.epochDay);
+                    stmt.setString(6, row.type);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static boolean isOfx(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".ofx") || name.endsWith(".qfx");
+    }
+
+    // CSV
+
+    private void parseCsv(BufferedReader reader, BlockingQueue<List<ParsedRow>> chunks, AtomicLong rowsRead,
+                          AtomicLong rowsRejected, RejectsWriter rejects) throws IOException, InterruptedException {
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            return;
+        }
+        List<String> header = splitCsvLine(headerLine);
+        int dateColumn = findColumn(header, "date");
+        int descriptionColumn = findColumn(header, "description", "category", "memo", "payee");
+        int amountColumn = findColumn(header, "amount");
+        int typeColumn = findColumn(header, "type");
+        if (dateColumn < 0 || descriptionColumn < 0 || amountColumn < 0) {
+            throw new IOException("CSV header must contain date, description and amount columns");
+        }
+
+        List<ParsedRow> chunk = new ArrayList<>(chunkSize);
+        String line;
+        long lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            rowsRead.incrementAndGet();
+            try {
+                List<String> fields = splitCsvLine(line);
+                String type = typeColumn >= 0 ? field(fields, typeColumn) : null;
+                chunk.add(validate(field(fields, dateColumn), field(fields, descriptionColumn),
+                        field(fields, amountColumn), type));
+            } catch (RowRejectedException e) {
+                rowsRejected.incrementAndGet();
+                rejects.write(lineNumber, line, e.getMessage());
+                continue;
+            }
+            if (chunk.size() == chunkSize) {
+                chunks.put(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.put(chunk);
+        }
+    }
+
+    private static int findColumn(List<String> header, String... names) {
+        for (String name : names) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).trim().equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index).trim() : "";
+    }
+
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    // OFX: only the STMTTRN blocks matter; both SGML (unclosed) and XML style tags are accepted
+
+    private void parseOfx(BufferedReader reader, BlockingQueue<List<ParsedRow>> chunks, AtomicLong rowsRead,
+                          AtomicLong rowsRejected, RejectsWriter rejects) throws IOException, InterruptedException {
+        List<ParsedRow> chunk = new ArrayList<>(chunkSize);
+        String datePosted = null;
+        String amount = null;
+        String name = null;
+        String memo = null;
+        boolean inTransaction = false;
+        long transactionNumber = 0;
+
+        OfxTokenizer tokens = new OfxTokenizer(reader);
+        String tag;
+        while ((tag = tokens.nextTag()) != null) {
+            if (tag.equals("STMTTRN")) {
+                inTransaction = true;
+                datePosted = amount = name = memo = null;
+            } else if (tag.equals("/STMTTRN") && inTransaction) {
+                inTransaction = false;
+                transactionNumber++;
+                rowsRead.incrementAndGet();
+                try {
+                    String description = name != null && !name.isEmpty() ? name : memo;
+                    chunk.add(validate(ofxDate(datePosted), description, amount, null));
+                } catch (RowRejectedException e) {
+                    rowsRejected.incrementAndGet();
+                    rejects.write(transactionNumber,
+                            String.join(",", String.valueOf(datePosted), String.valueOf(name), String.valueOf(amount)),
+                            e.getMessage());
+                    continue;
+                }
+                if (chunk.size() == chunkSize) {
+                    chunks.put(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            } else if (inTransaction) {
+                switch (tag) {
+                    case "DTPOSTED":
+                        datePosted = tokens.text();
+                        break;
+                    case "TRNAMT":
+                        amount = tokens.text();
+                        break;
+                    case "NAME":
+                        name = tokens.text();
+                        break;
+                    case "MEMO":
+                        memo = tokens.text();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.put(chunk);
+        }
+    }
+
+    // OFX dates look like 20240131 or 20240131120000[-5:EST]; stored as YYYY-MM-DD
+    private static String ofxDate(String value) throws RowRejectedException {
+        if (value == null || value.length() < 8) {
+            throw new RowRejectedException("Missing or invalid DTPOSTED");
+        }
+        return value.substring(0, 4) + "-" + value.substring(4, 6) + "-" + value.substring(6, 8);
+    }
+
+    private static class OfxTokenizer {
+        private final Reader reader;
+        private final StringBuilder text = new StringBuilder();
+        private boolean atTagStart;
+
+        OfxTokenizer(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Returns the next tag name (closing tags keep their leading slash), collecting
+         * the text that follows it so {@link #text()} can return the element value.
+         */
+        String nextTag() throws IOException {
+            int c;
+            if (!atTagStart) {
+                while ((c = reader.read()) != -1 && c != '<') {
+                    // skip the OFX header and anything else outside of a tag
+                }
+                if (c == -1) {
+                    return null;
+                }
+            }
+            StringBuilder tag = new StringBuilder();
+            while ((c = reader.read()) != -1 && c != '>') {
+                tag.append((char) c);
+            }
+            if (c == -1) {
+                return null;
+            }
+            text.setLength(0);
+            while ((c = reader.read()) != -1 && c != '<') {
+                text.append((char) c);
+            }
+            atTagStart = c == '<';
+            return tag.toString().trim().toUpperCase(Locale.ROOT);
+        }
+
+        String text() {
+            return text.toString().trim();
+        }
+    }
+
+    // Validation shared by both formats
+
+    private static ParsedRow validate(String date, String description, String amountText, String type)
+            throws RowRejectedException {
+        LocalDate parsedDate = DateUtils.parse(date);
+        if (parsedDate == null) {
+            throw new RowRejectedException("Invalid date: " + date);
+        }
+        if (description == null || description.isBlank()) {
+            throw new RowRejectedException("Missing description");
+        }
+        Money amount;
+        try {
+            amount = Money.parse(amountText);
+        } catch (NumberFormatException e) {
+            throw new RowRejectedException("Invalid amount: " + amountText);
+        }
+
+        String normalizedType;
+        if (type == null || type.isBlank()) {
+            normalizedType = amount.isNegative() ? "Expense" : "Income";
+        } else if (type.equalsIgnoreCase("expense") || type.equalsIgnoreCase("debit")) {
+            normalizedType = "Expense";
+        } else if (type.equalsIgnoreCase("income") || type.equalsIgnoreCase("credit")) {
+            normalizedType = "Income";
+        } else {
+            throw new RowRejectedException("Unknown type: " + type);
+        }
+        return new ParsedRow(date.trim(), (int) parsedDate.toEpochDay(), description.trim(), amount.abs().getCents(),
+                normalizedType);
+    }
+
+    private static void putQuietly(BlockingQueue<List<ParsedRow>> queue, List<ParsedRow> item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes rejected rows as CSV (line, reason, original content); the file is only created on the first reject.
+     */
+    private static class RejectsWriter implements AutoCloseable {
+        private final Path path;
+        private BufferedWriter writer;
+
+        RejectsWriter(Path path) throws IOException {
+            this.path = path;
+            Files.deleteIfExists(path);
+        }
+
+        void write(long lineNumber, String original, String reason) throws IOException {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+                writer.write("line,reason,original");
+                writer.newLine();
+            }
+            writer.write(lineNumber + "," + quote(reason) + "," + quote(original));
+            writer.newLine();
+        }
+
+        private static String quote(String value) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package managers;
+
+import models.Transaction;
+
+/**
+ * Notified by TransactionManager after a write has been committed.
+ * Per-row callbacks run one at a time, in commit order, on the write queue's callback
+ * thread; they must not wait for another queued write. onTransactionsReplaced runs on
+ * the thread that made the bulk change.
+ */
+public interface TransactionListener {
+
+    void onTransactionAdded(int userId, Transaction transaction);
+
+    void onTransactionDeleted(int userId, Transaction transaction);
+
+    void onTransactionUpdated(int userId, Transaction before, Transaction after);
+
+    /**
+     * Called after many rows changed at once (e.g. a statement import), when per-row deltas are not available.
+     */
+    default void onTransactionsReplaced(int userId) {
+    }
+}
@@ -1,62 +1,797 @@
 package managers;
 
 import database.DatabaseConnection;
+import database.TransactionArchive;
+import models.Money;
 import models.Transaction;
+import models.TransactionColumns;
+import models.TransactionFilter;
+import models.TransactionPage;
+import util.DateUtils;
+import util.Metrics;
+import util.OperationStats;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TransactionManager {
 
+    // Timings of the public methods, published over JMX as pfms:type=TransactionManager,name=<method>
+    private static final OperationStats ADD_TRANSACTION = Metrics.operation("TransactionManager", "addTransaction");
+    private static final OperationStats UPDATE_TRANSACTION = Metrics.operation("TransactionManager", "updateTransaction");
+    private static final OperationStats DELETE_TRANSACTION = Metrics.operation("TransactionManager", "deleteTransaction");
+    private static final OperationStats GET_TRANSACTIONS = Metrics.operation("TransactionManager", "getTransactions");
+    private static final OperationStats GET_TRANSACTION_COLUMNS = Metrics.operation("TransactionManager", "getTransactionColumns");
+    private static final OperationStats GET_TRANSACTIONS_PAGE = Metrics.operation("TransactionManager", "getTransactionsPage");
+    private static final OperationStats GET_PAGE_KEY_AT = Metrics.operation("TransactionManager", "getPageKeyAt");
+    private static final OperationStats SEARCH_TRANSACTIONS = Metrics.operation("TransactionManager", "searchTransactions");
+    private static final OperationStats COUNT_TRANSACTIONS = Metrics.operation("TransactionManager", "countTransactions");
+    private static final OperationStats GET_MONTHLY_TOTALS = Metrics.operation("TransactionManager", "getMonthlyTotals");
+    private static final OperationStats GET_CATEGORY_TOTALS = Metrics.operation("TransactionManager", "getCategoryTotals");
+    private static final OperationStats GET_TOTALS_BY_TYPE = Metrics.operation("TransactionManager", "getTotalsByType");
+    private static final OperationStats TRANSACTIONS_REPLACED = Metrics.operation("TransactionManager", "fireTransactionsReplaced");
+
+    // Most categories a search walks through; a one-letter prefix can match thousands of payees
+    private static final int MAX_SEARCH_CATEGORIES = 500;
+
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(TransactionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells listeners that many of a user's rows changed outside the per-row methods below.
+     */
+    public void fireTransactionsReplaced(int userId) {
+        long start = System.nanoTime();
+        for (TransactionListener listener : listeners) {
+            listener.onTransactionsReplaced(userId);
+        }
+        TRANSACTIONS_REPLACED.record(start, 0);
+    }
+
     public void addTransaction(int userId, Transaction transaction) {
-        String query = "INSERT INTO Transactions (userId, amount, category, date, type) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, userId);
-            stmt.setDouble(2, transaction.getAmount());
-            stmt.setString(3, transaction.getDescription());
-            stmt.setString(4, transaction.getDate());
-            stmt.setString(5, transaction.getType());
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("Error adding transaction: " + e.getMessage());
+        try {
+            addTransactionAsync(userId, transaction).join();
+        } catch (CompletionException e) {
+            System.err.println("Error adding transaction: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Queues the insert on the write queue, where it is committed together with other queued writes.
+     * The future completes with the transaction, its id set, after the commit and after the listeners
+     * have been notified.
+     */
+    public CompletableFuture<Transaction> addTransactionAsync(int userId, Transaction transaction) {
+        return ADD_TRANSACTION.timeAsync(() -> {
+            String query = "INSERT INTO Transactions (userId, amountCents, categoryId, date, epochDay, type) "
+                    + "VALUES (?, ?, ?, ?, ?, ?) RETURNING id";
+            int categoryId;
+            try {
+                categoryId = DatabaseConnection.getCategories().idOf(transaction.getDescription());
+            } catch (SQLException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return DatabaseConnection.getWriteQueue().submit(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setInt(1, userId);
+                    bindTransactionValues(stmt, 2, transaction, categoryId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        return rs.next() ? rs.getInt("id") : 0;
+                    }
+                }
+            }).thenApply(id -> {
+                transaction.setId(id);
+                for (TransactionListener listener : listeners) {
+                    listener.onTransactionAdded(userId, transaction);
+                }
+                return transaction;
+            });
+        }, added -> 1);
+    }
+
+    /**
+     * Saves the edited values of an existing transaction, matched by its id.
+     */
+    public void updateTransaction(int userId, Transaction transaction) {
+        try {
+            updateTransactionAsync(userId, transaction).join();
+        } catch (CompletionException e) {
+            System.err.println("Error updating transaction: " + e.getCause().getMessage());
         }
     }
 
+    /**
+     * Queued form of {@link #updateTransaction}. The future completes with false if the user has no
+     * transaction with that id, which is also the case once it has been archived (see {@link #isArchived}).
+     */
+    public CompletableFuture<Boolean> updateTransactionAsync(int userId, Transaction transaction) {
+        return UPDATE_TRANSACTION.timeAsync(() -> {
+            String select = "SELECT id, date, categoryId, amountCents, type FROM Transactions WHERE id = ? AND userId = ?";
+            String update = "UPDATE Transactions SET amountCents = ?, categoryId = ?, date = ?, epochDay = ?, type = ? "
+                    + "WHERE id = ? AND userId = ?";
+            int categoryId;
+            try {
+                categoryId = DatabaseConnection.getCategories().idOf(transaction.getDescription());
+            } catch (SQLException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            Transaction after = new Transaction(transaction.getId(), transaction.getDate(), transaction.getDescription(),
+                    transaction.getAmount(), transaction.getType());
+            return DatabaseConnection.getWriteQueue().submit(conn -> {
+                Transaction before;
+                try (PreparedStatement selectStmt = conn.prepareStatement(select)) {
+                    selectStmt.setInt(1, after.getId());
+                    selectStmt.setInt(2, userId);
+                    try (ResultSet rs = selectStmt.executeQuery()) {
+                        before = rs.next() ? readTransaction(conn, rs) : null;
+                    }
+                }
+                if (before != null) {
+                    try (PreparedStatement updateStmt = conn.prepareStatement(update)) {
+                        bindTransactionValues(updateStmt, 1, after, categoryId);
+                        updateStmt.setInt(6, after.getId());
+                        updateStmt.setInt(7, userId);
+                        updateStmt.executeUpdate();
+                    }
+                }
+                return before;
+            }).thenApply(before -> {
+                if (before == null) {
+                    return false;
+                }
+                for (TransactionListener listener : listeners) {
+                    listener.onTransactionUpdated(userId, before, after);
+                }
+                return true;
+            });
+        }, updated -> updated ? 1 : 0);
+    }
+
+    // Binds amountCents, categoryId, date, epochDay and type starting at the given parameter index
+    private void bindTransactionValues(PreparedStatement stmt, int index, Transaction transaction, int categoryId)
+            throws SQLException {
+        Integer epochDay = DateUtils.toEpochDay(transaction.getDate());
+        stmt.setLong(index, transaction.getAmount().getCents());
+        stmt.setInt(index + 1, categoryId);
+        stmt.setString(index + 2, transaction.getDate());
+        if (epochDay != null) {
+            stmt.setInt(index + 3, epochDay);
+        } else {
+            stmt.setNull(index + 3, Types.INTEGER);
+        }
+        stmt.setString(index + 4, transaction.getType());
+    }
+
+    private Transaction readTransaction(Connection conn, ResultSet rs) throws SQLException {
+        return new Transaction(
+                rs.getInt("id"),
+                rs.getString("date"),
+                DatabaseConnection.getCategories().nameOf(conn, rs.getInt("categoryId")),
+                Money.ofCents(rs.getLong("amountCents")),
+                rs.getString("type")
+        );
+    }
+
     public List<Transaction> getTransactions(int userId) {
+        return getTransactions(userId, TransactionFilter.ALL);
+    }
+
+    /**
+     * Returns the user's transactions that match the filter, newest first.
+     */
+    public List<Transaction> getTransactions(int userId, TransactionFilter filter) {
+        long start = System.nanoTime();
         List<Transaction> transactions = new ArrayList<>();
-        String query = "SELECT * FROM Transactions WHERE userId = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                transactions.add(new Transaction(
-                        rs.getInt("id"),
-                        rs.getString("date"),
-                        rs.getString("category"),
-                        rs.getDouble("amount"),
-                        rs.getString("type")
-                ));
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (TransactionSegment segment : TransactionSegment.of(conn, filter)) {
+                String query = segment.select(conn, "id, date, categoryId, amountCents, type, epochDay", null)
+                        + TransactionSegment.NEWEST_FIRST;
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    segment.bind(stmt, 1, userId, null);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        transactions.add(readTransaction(conn, rs));
+                    }
+                }
             }
         } catch (SQLException e) {
+            GET_TRANSACTIONS.recordError(start);
             System.err.println("Error fetching transactions: " + e.getMessage());
+            return transactions;
         }
+        GET_TRANSACTIONS.record(start, transactions.size());
         return transactions;
     }
 
-    public void deleteTransaction(int transactionId) {
-        String query = "DELETE FROM Transactions WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+    // Conditions for the parts of the filter that are set, appended after "WHERE userId = ?".
+    // Every dated condition ranges over epochDay, so the (userId, epochDay, id) and
+    // (userId, type, epochDay, ...) indexes serve them as range scans.
+    static String filterClause(TransactionFilter filter) {
+        StringBuilder clause = new StringBuilder();
+        if (filter.getFromEpochDay() != null && filter.getToEpochDay() != null) {
+            clause.append(" AND epochDay BETWEEN ? AND ?");
+        } else if (filter.getFromEpochDay() != null) {
+            clause.append(" AND epochDay >= ?");
+        } else if (filter.getToEpochDay() != null) {
+            clause.append(" AND epochDay <= ?");
+        }
+        if (filter.getType() != null) {
+            clause.append(" AND type = ?");
+        }
+        if (filter.getCategory() != null) {
+            clause.append(" AND categoryId = ?");
+        }
+        return clause.toString();
+    }
+
+    // Binds the values of filterClause() starting at the given index and returns the next free index.
+    // An unknown category binds an id no row has, so the query simply matches nothing.
+    static int bindFilter(PreparedStatement stmt, int index, TransactionFilter filter) throws SQLException {
+        if (filter.getFromEpochDay() != null) {
+            stmt.setInt(index++, filter.getFromEpochDay());
+        }
+        if (filter.getToEpochDay() != null) {
+            stmt.setInt(index++, filter.getToEpochDay());
+        }
+        if (filter.getType() != null) {
+            stmt.setString(index++, filter.getType());
+        }
+        if (filter.getCategory() != null) {
+            stmt.setInt(index++, DatabaseConnection.getCategories().find(stmt.getConnection(), filter.getCategory()));
+        }
+        return index;
+    }
+
+    // A range that starts on the first day of a month and ends on the last day of one (or is open)
+    // covers whole months, so the aggregates can read the few MonthlyRollup rows instead of Transactions.
+    private static boolean coversWholeMonths(TransactionFilter filter) {
+        Integer from = filter.getFromEpochDay();
+        Integer to = filter.getToEpochDay();
+        return (from == null || LocalDate.ofEpochDay(from).getDayOfMonth() == 1)
+                && (to == null || LocalDate.ofEpochDay(to + 1).getDayOfMonth() == 1);
+    }
+
+    // filterClause() for MonthlyRollup. A date range also leaves out the buckets of undated rows,
+    // which the epochDay conditions exclude from Transactions.
+    private static String rollupClause(TransactionFilter filter) {
+        StringBuilder clause = new StringBuilder();
+        if (filter.getFromEpochDay() != null && filter.getToEpochDay() != null) {
+            clause.append(" AND month BETWEEN ? AND ?");
+        } else if (filter.getFromEpochDay() != null) {
+            clause.append(" AND month >= ?");
+        } else if (filter.getToEpochDay() != null) {
+            clause.append(" AND month <= ?");
+        }
+        if (filter.hasDateRange()) {
+            clause.append(" AND dated = 1");
+        }
+        if (filter.getType() != null) {
+            clause.append(" AND type = ?");
+        }
+        if (filter.getCategory() != null) {
+            clause.append(" AND categoryId = ?");
+        }
+        return clause.toString();
+    }
+
+    // bindFilter() for rollupClause(), binding the months the range's ends fall in
+    private static int bindRollupFilter(PreparedStatement stmt, int index, TransactionFilter filter) throws SQLException {
+        if (filter.getFromEpochDay() != null) {
+            stmt.setString(index++, DateUtils.monthKey(DateUtils.epochMonth(filter.getFromEpochDay())));
+        }
+        if (filter.getToEpochDay() != null) {
+            stmt.setString(index++, DateUtils.monthKey(DateUtils.epochMonth(filter.getToEpochDay())));
+        }
+        if (filter.getType() != null) {
+            stmt.setString(index++, filter.getType());
+        }
+        if (filter.getCategory() != null) {
+            stmt.setInt(index++, DatabaseConnection.getCategories().find(stmt.getConnection(), filter.getCategory()));
+        }
+        return index;
+    }
+
+    /**
+     * Loads every transaction of a user into a columnar snapshot for in-memory analytics.
+     * Rows are decoded straight into primitive arrays; no Transaction objects are created.
+     */
+    public TransactionColumns getTransactionColumns(int userId) {
+        long start = System.nanoTime();
+        TransactionColumns.Builder columns = new TransactionColumns.Builder(countTransactions(userId));
+        String[] categoryNames = new String[0];
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            List<TransactionSegment> segments = TransactionSegment.of(conn, TransactionFilter.ALL);
+            String query = TransactionSegment.selectAll(conn, segments, "epochDay, categoryId, amountCents, type");
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                TransactionSegment.bindAll(stmt, 1, segments, userId);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    int epochDay = rs.getInt(1);
+                    columns.add(rs.wasNull() ? TransactionColumns.UNDATED : epochDay,
+                            rs.getInt(2), rs.getLong(3), rs.getString(4));
+                }
+            }
+            // Taken after the scan so it covers every id the scan returned
+            categoryNames = DatabaseConnection.getCategories().names(conn);
+        } catch (SQLException e) {
+            GET_TRANSACTION_COLUMNS.recordError(start);
+            System.err.println("Error loading transaction columns: " + e.getMessage());
+            return columns.build(categoryNames);
+        }
+        TransactionColumns snapshot = columns.build(categoryNames);
+        GET_TRANSACTION_COLUMNS.record(start, snapshot.size());
+        return snapshot;
+    }
+
+    /**
+     * Returns up to {@code limit} transactions ordered newest first, starting after {@code afterKey}
+     * (or from the newest row when it is null). Each page is an index range scan on
+     * (userId, epochDay, id), so the cost does not grow with how deep the user has scrolled.
+     * Pages of archived years merge the same scan over each year's file.
+     */
+    public TransactionPage getTransactionsPage(int userId, TransactionPage.Key afterKey, int limit) {
+        return getTransactionsPage(userId, TransactionFilter.ALL, afterKey, limit);
+    }
+
+    /**
+     * Same as {@link #getTransactionsPage(int, TransactionPage.Key, int)} over the rows that match the filter.
+     */
+    public TransactionPage getTransactionsPage(int userId, TransactionFilter filter, TransactionPage.Key afterKey,
+                                               int limit) {
+        long start = System.nanoTime();
+        List<Transaction> page = new ArrayList<>(limit);
+        TransactionPage.Key lastKey = null;
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            lastKey = readPage(conn, userId, filter, afterKey, limit, page);
+        } catch (SQLException e) {
+            GET_TRANSACTIONS_PAGE.recordError(start);
+            System.err.println("Error fetching transaction page: " + e.getMessage());
+            return new TransactionPage(page, null);
+        }
+        GET_TRANSACTIONS_PAGE.record(start, page.size());
+        return new TransactionPage(page, page.size() < limit ? null : lastKey);
+    }
+
+    // Appends up to limit rows that follow afterKey to the page and returns the key of the last one added.
+    // Segments before the one holding the key were read by earlier pages; the rest are read in order
+    // until the page is full, each from the start once the key's own segment is done.
+    private TransactionPage.Key readPage(Connection conn, int userId, TransactionFilter filter,
+                                         TransactionPage.Key afterKey, int limit, List<Transaction> page)
+            throws SQLException {
+        int target = page.size() + limit;
+        TransactionPage.Key lastKey = null;
+        boolean started = afterKey == null;
+        for (TransactionSegment segment : TransactionSegment.of(conn, filter)) {
+            if (!started && !segment.contains(afterKey)) {
+                continue;
+            }
+            TransactionPage.Key after = started ? null : afterKey;
+            started = true;
+            String query = segment.select(conn, "id, date, categoryId, amountCents, type, epochDay", after)
+                    + TransactionSegment.NEWEST_FIRST + " LIMIT ?";
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                int index = segment.bind(stmt, 1, userId, after);
+                stmt.setInt(index, target - page.size());
+                lastKey = readPageRows(conn, stmt.executeQuery(), page, lastKey);
+            }
+            if (page.size() >= target) {
+                break;
+            }
+        }
+        return lastKey;
+    }
+
+    /**
+     * Finds transactions whose description contains every word of {@code text}, each matched as a
+     * prefix, so "gro sto" finds "Grocery Store". Rows of the best-matching description come first
+     * (FTS5's bm25 rank), newest first within each description; only rows inside the filter are
+     * searched, and the filter's own category is ignored.
+     *
+     * Like {@link #getTransactionsPage}, pass the previous page's next key to continue. A page costs
+     * one full-text query plus one index seek per description it reads from, however large the
+     * ledger. If the row a key points at has been deleted, the search ends there.
+     */
+    public TransactionPage searchTransactions(int userId, String text, TransactionFilter filter,
+                                              TransactionPage.Key afterKey, int limit) {
+        long start = System.nanoTime();
+        List<Transaction> page = new ArrayList<>(limit);
+        TransactionPage.Key lastKey = null;
+        String match = toMatchExpression(text);
+        if (match == null) {
+            SEARCH_TRANSACTIONS.record(start, 0);
+            return new TransactionPage(page, null);
+        }
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            List<Integer> categoryIds = matchCategories(conn, userId, match);
+            int first = 0;
+            if (afterKey != null) {
+                first = categoryIds.indexOf(categoryOfRow(conn, userId, afterKey));
+                if (first < 0) {
+                    SEARCH_TRANSACTIONS.record(start, 0);
+                    return new TransactionPage(page, null);
+                }
+            }
+            for (int i = first; i < categoryIds.size() && page.size() < limit; i++) {
+                String category = DatabaseConnection.getCategories().nameOf(conn, categoryIds.get(i));
+                TransactionPage.Key key = readPage(conn, userId, filter.withCategory(category),
+                        i == first ? afterKey : null, limit - page.size(), page);
+                if (key != null) {
+                    lastKey = key;
+                }
+            }
+        } catch (SQLException e) {
+            SEARCH_TRANSACTIONS.recordError(start);
+            System.err.println("Error searching transactions: " + e.getMessage());
+            return new TransactionPage(page, null);
+        }
+        SEARCH_TRANSACTIONS.record(start, page.size());
+        return new TransactionPage(page, page.size() < limit ? null : lastKey);
+    }
+
+    // Each word becomes a quoted prefix term; FTS5 requires all of them. Null when there is no word to search for.
+    private static String toMatchExpression(String text) {
+        StringBuilder match = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            if (word.codePoints().noneMatch(Character::isLetterOrDigit)) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(word.replace("\"", "\"\"")).append("\"*");
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    // Only the user's own categories count towards the limit, or other users' payees could crowd them out.
+    // MonthlyRollup lists them, archived years included, from its primary key.
+    private List<Integer> matchCategories(Connection conn, int userId, String match) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String query = """
+            SELECT rowid FROM CategorySearch
+            WHERE CategorySearch MATCH ? AND rowid IN (SELECT categoryId FROM MonthlyRollup WHERE userId = ?)
+            ORDER BY rank LIMIT ?
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, match);
+            stmt.setInt(2, userId);
+            stmt.setInt(3, MAX_SEARCH_CATEGORIES);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    // Looks in the archive of the key's year when the row is no longer in Transactions
+    private Integer categoryOfRow(Connection conn, int userId, TransactionPage.Key key) throws SQLException {
+        Integer categoryId = categoryOfRow(conn, "Transactions", userId, key.getId());
+        if (categoryId == null && key.getEpochDay() != null) {
+            int year = LocalDate.ofEpochDay(key.getEpochDay()).getYear();
+            if (TransactionArchive.archivedYears(conn).contains(year)) {
+                categoryId = categoryOfRow(conn, TransactionArchive.attach(conn, year), userId, key.getId());
+            }
+        }
+        return categoryId;
+    }
+
+    private Integer categoryOfRow(Connection conn, String table, int userId, int transactionId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT categoryId FROM " + table + " WHERE id = ? AND userId = ?")) {
             stmt.setInt(1, transactionId);
-            stmt.executeUpdate();
+            stmt.setInt(2, userId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : null;
+        }
+    }
+
+    // Appends the rows to the page and returns the key of the last one read
+    private TransactionPage.Key readPageRows(Connection conn, ResultSet rs, List<Transaction> page,
+                                             TransactionPage.Key lastKey) throws SQLException {
+        while (rs.next()) {
+            Transaction transaction = readTransaction(conn, rs);
+            int epochDay = rs.getInt("epochDay");
+            lastKey = new TransactionPage.Key(rs.wasNull() ? null : epochDay, transaction.getId());
+            page.add(transaction);
+        }
+        return lastKey;
+    }
+
+    /**
+     * Returns the key of the row at {@code offset} in newest-first order, so a page can be
+     * fetched without walking every page before it (e.g. when the scroll bar is dragged).
+     */
+    public TransactionPage.Key getPageKeyAt(int userId, int offset) {
+        return getPageKeyAt(userId, TransactionFilter.ALL, offset);
+    }
+
+    public TransactionPage.Key getPageKeyAt(int userId, TransactionFilter filter, int offset) {
+        long start = System.nanoTime();
+        // Whole segments before the offset are skipped by their count rather than stepped through
+        int remaining = offset;
+        TransactionPage.Key key = null;
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (TransactionSegment segment : TransactionSegment.of(conn, filter)) {
+                String query = segment.select(conn, "epochDay, id", null)
+                        + TransactionSegment.NEWEST_FIRST + " LIMIT 1 OFFSET ?";
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    int index = segment.bind(stmt, 1, userId, null);
+                    stmt.setInt(index, remaining);
+                    ResultSet rs = stmt.executeQuery();
+                    if (rs.next()) {
+                        int epochDay = rs.getInt("epochDay");
+                        key = new TransactionPage.Key(rs.wasNull() ? null : epochDay, rs.getInt("id"));
+                        break;
+                    }
+                }
+                remaining -= countRows(conn, segment, userId);
+            }
+        } catch (SQLException e) {
+            GET_PAGE_KEY_AT.recordError(start);
+            System.err.println("Error locating transaction page: " + e.getMessage());
+            return null;
+        }
+        GET_PAGE_KEY_AT.record(start, key == null ? 0 : 1);
+        return key;
+    }
+
+    public int countTransactions(int userId) {
+        return countTransactions(userId, TransactionFilter.ALL);
+    }
+
+    public int countTransactions(int userId, TransactionFilter filter) {
+        long start = System.nanoTime();
+        int count;
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            count = countTransactions(conn, userId, filter);
+        } catch (SQLException e) {
+            COUNT_TRANSACTIONS.recordError(start);
+            System.err.println("Error counting transactions: " + e.getMessage());
+            return 0;
+        }
+        COUNT_TRANSACTIONS.record(start, 1);
+        return count;
+    }
+
+    int countTransactions(Connection conn, int userId) throws SQLException {
+        return countTransactions(conn, userId, TransactionFilter.ALL);
+    }
+
+    // Counts whole months from MonthlyRollup, which also covers archived years without attaching them
+    private int countTransactions(Connection conn, int userId, TransactionFilter filter) throws SQLException {
+        if (coversWholeMonths(filter)) {
+            String query = "SELECT SUM(rowCount) FROM MonthlyRollup WHERE userId = ?" + rollupClause(filter);
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setInt(1, userId);
+                bindRollupFilter(stmt, 2, filter);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+        int count = 0;
+        for (TransactionSegment segment : TransactionSegment.of(conn, filter)) {
+            count += countRows(conn, segment, userId);
+        }
+        return count;
+    }
+
+    private int countRows(Connection conn, TransactionSegment segment, int userId) throws SQLException {
+        String query = "SELECT COUNT(*) FROM (" + segment.select(conn, "id", null) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            segment.bind(stmt, 1, userId, null);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Aggregations are grouped inside SQLite so callers only receive one row per group.
+    // The filtered forms replace the filter's type, if any, with the type asked for.
+    // Filters covering whole months (every dashboard window does) are answered from MonthlyRollup;
+    // other ranges group the rows of the filter's segments, archives included where the range reaches them.
+
+    // Binds the parameters of a rollup query, or of the segments (not null) the query reads instead
+    private static void bindAggregate(PreparedStatement stmt, int userId, TransactionFilter filter,
+                                      List<TransactionSegment> segments) throws SQLException {
+        if (segments == null) {
+            stmt.setInt(1, userId);
+            bindRollupFilter(stmt, 2, filter);
+        } else {
+            TransactionSegment.bindAll(stmt, 1, segments, userId);
+        }
+    }
+
+    public Map<String, Money> getMonthlyTotals(int userId, String type) {
+        return getMonthlyTotals(userId, type, TransactionFilter.ALL);
+    }
+
+    public Map<String, Money> getMonthlyTotals(int userId, String type, TransactionFilter filter) {
+        long start = System.nanoTime();
+        Map<String, Money> totals = new TreeMap<>();
+        TransactionFilter typed = filter.withType(type);
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            List<TransactionSegment> segments = coversWholeMonths(typed) ? null : TransactionSegment.of(conn, typed);
+            String query = segments == null
+                    ? "SELECT month, SUM(totalCents) AS total FROM MonthlyRollup WHERE userId = ?"
+                            + rollupClause(typed) + " GROUP BY month"
+                    : """
+                SELECT COALESCE(strftime('%Y-%m', epochDay * 86400, 'unixepoch'), substr(date, 1, 7)) AS month,
+                       SUM(amountCents) AS total
+                FROM (""" + TransactionSegment.selectAll(conn, segments, "epochDay, date, amountCents")
+                            + ") GROUP BY month";
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                bindAggregate(stmt, userId, typed, segments);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    totals.put(rs.getString("month"), Money.ofCents(rs.getLong("total")));
+                }
+            }
+        } catch (SQLException e) {
+            GET_MONTHLY_TOTALS.recordError(start);
+            System.err.println("Error fetching monthly totals: " + e.getMessage());
+            return totals;
+        }
+        GET_MONTHLY_TOTALS.record(start, totals.size());
+        return totals;
+    }
+
+    public Map<String, Money> getCategoryTotals(int userId, String type) {
+        return getCategoryTotals(userId, type, TransactionFilter.ALL);
+    }
+
+    public Map<String, Money> getCategoryTotals(int userId, String type, TransactionFilter filter) {
+        long start = System.nanoTime();
+        Map<String, Money> totals = new HashMap<>();
+        TransactionFilter typed = filter.withType(type);
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            List<TransactionSegment> segments = coversWholeMonths(typed) ? null : TransactionSegment.of(conn, typed);
+            String query = segments == null
+                    ? "SELECT categoryId, SUM(totalCents) AS total FROM MonthlyRollup WHERE userId = ?"
+                            + rollupClause(typed) + " GROUP BY categoryId"
+                    : "SELECT categoryId, SUM(amountCents) AS total FROM ("
+                            + TransactionSegment.selectAll(conn, segments, "categoryId, amountCents")
+                            + ") GROUP BY categoryId";
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                bindAggregate(stmt, userId, typed, segments);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    String category = DatabaseConnection.getCategories().nameOf(conn, rs.getInt("categoryId"));
+                    totals.put(category, Money.ofCents(rs.getLong("total")));
+                }
+            }
         } catch (SQLException e) {
-            System.err.println("Error deleting transaction: " + e.getMessage());
+            GET_CATEGORY_TOTALS.recordError(start);
+            System.err.println("Error fetching category totals: " + e.getMessage());
+            return totals;
         }
+        GET_CATEGORY_TOTALS.record(start, totals.size());
+        return totals;
+    }
+
+    public Map<String, Money> getTotalsByType(int userId) {
+        return getTotalsByType(userId, TransactionFilter.ALL);
+    }
+
+    public Map<String, Money> getTotalsByType(int userId, TransactionFilter filter) {
+        long start = System.nanoTime();
+        Map<String, Money> totals = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            List<TransactionSegment> segments = coversWholeMonths(filter) ? null : TransactionSegment.of(conn, filter);
+            String query = segments == null
+                    ? "SELECT type, SUM(totalCents) AS total FROM MonthlyRollup WHERE userId = ?"
+                            + rollupClause(filter) + " GROUP BY type"
+                    : "SELECT type, SUM(amountCents) AS total FROM ("
+                            + TransactionSegment.selectAll(conn, segments, "type, amountCents") + ") GROUP BY type";
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                bindAggregate(stmt, userId, filter, segments);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    totals.put(rs.getString("type"), Money.ofCents(rs.getLong("total")));
+                }
+            }
+        } catch (SQLException e) {
+            GET_TOTALS_BY_TYPE.recordError(start);
+            System.err.println("Error fetching totals: " + e.getMessage());
+            return totals;
+        }
+        GET_TOTALS_BY_TYPE.record(start, totals.size());
+        return totals;
+    }
+
+    public void deleteTransaction(int transactionId) {
+        try {
+            deleteTransactionAsync(transactionId).join();
+        } catch (CompletionException e) {
+            System.err.println("Error deleting transaction: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Queued form of {@link #deleteTransaction}. The future completes with the deleted row, or null if
+     * there was no transaction with that id.
+     */
+    public CompletableFuture<Transaction> deleteTransactionAsync(int transactionId) {
+        return deleteWhere(transactionId, null);
+    }
+
+    /**
+     * Deletes the transaction only if it belongs to the user, e.g. for a request from a remote client.
+     * The future completes with null if the user has no transaction with that id, which is also the
+     * case once it has been archived (see {@link #isArchived}).
+     */
+    public CompletableFuture<Transaction> deleteTransactionAsync(int userId, int transactionId) {
+        return deleteWhere(transactionId, userId);
+    }
+
+    /**
+     * True if the user's transaction with that id has been moved into an archived year. Archived
+     * transactions are read-only, so this tells a caller why an update or delete found no row.
+     */
+    public boolean isArchived(int userId, int transactionId) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (int year : TransactionArchive.archivedYears(conn)) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM "
+                        + TransactionArchive.attach(conn, year) + " WHERE id = ? AND userId = ?")) {
+                    stmt.setInt(1, transactionId);
+                    stmt.setInt(2, userId);
+                    if (stmt.executeQuery().next()) {
+                        return true;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking archived transactions: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // Deletes the row with that id, and only if ownerId owns it when ownerId is not null
+    private CompletableFuture<Transaction> deleteWhere(int transactionId, Integer ownerId) {
+        return DELETE_TRANSACTION.timeAsync(() -> {
+            // RETURNING hands back the deleted row so listeners can apply it as a delta
+            String query = "DELETE FROM Transactions WHERE id = ?" + (ownerId == null ? "" : " AND userId = ?")
+                    + " RETURNING id, userId, date, categoryId, amountCents, type";
+            return DatabaseConnection.getWriteQueue().submit(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setInt(1, transactionId);
+                    if (ownerId != null) {
+                        stmt.setInt(2, ownerId);
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return null;
+                        }
+                        return Map.entry(rs.getInt("userId"), readTransaction(conn, rs));
+                    }
+                }
+            }).thenApply(deleted -> {
+                if (deleted == null) {
+                    return null;
+                }
+                for (TransactionListener listener : listeners) {
+                    listener.onTransactionDeleted(deleted.getKey(), deleted.getValue());
+                }
+                return deleted.getValue();
+            });
+        }, deleted -> 1);
     }
 }
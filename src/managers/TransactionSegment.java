@@ -0,0 +1,154 @@
+package managers;
+
+import database.TransactionArchive;
+import models.TransactionFilter;
+import models.TransactionPage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One stretch of a user's transactions in newest-first order, read from the tables that hold it.
+ *
+ * Once years have been archived (see TransactionArchive) a filtered read is split into, in order:
+ * the dated rows after the newest archived year, from Transactions alone; the older dated rows,
+ * from Transactions and the archive of every year the filter's range reaches; and the rows whose
+ * date could not be parsed, which are never archived. Without archives the dated rows are a
+ * single segment. A segment attaches its archives only when it is read, so queries that stay in
+ * recent years never open an archive file.
+ */
+class TransactionSegment {
+
+    static final String NEWEST_FIRST = " ORDER BY epochDay DESC, id DESC";
+
+    private final TransactionFilter filter;
+    private final boolean undated;
+    private final List<Integer> archiveYears;
+
+    private TransactionSegment(TransactionFilter filter, boolean undated, List<Integer> archiveYears) {
+        this.filter = filter;
+        this.undated = undated;
+        this.archiveYears = archiveYears;
+    }
+
+    /**
+     * The segments of the rows that match the filter, in newest-first order.
+     */
+    static List<TransactionSegment> of(Connection conn, TransactionFilter filter) throws SQLException {
+        List<TransactionSegment> segments = new ArrayList<>();
+        List<Integer> archived = TransactionArchive.archivedYears(conn);
+        Integer from = filter.getFromEpochDay();
+        Integer to = filter.getToEpochDay();
+        if (archived.isEmpty()) {
+            segments.add(new TransactionSegment(filter, false, List.of()));
+        } else {
+            int recentFrom = (int) LocalDate.of(archived.get(archived.size() - 1) + 1, 1, 1).toEpochDay();
+            if (to == null || to >= recentFrom) {
+                segments.add(new TransactionSegment(
+                        filter.withEpochDayRange(from == null ? recentFrom : Math.max(from, recentFrom), to),
+                        false, List.of()));
+            }
+            if (from == null || from < recentFrom) {
+                int olderTo = to == null ? recentFrom - 1 : Math.min(to, recentFrom - 1);
+                List<Integer> years = new ArrayList<>();
+                for (int year : archived) {
+                    if ((from == null || LocalDate.of(year, 12, 31).toEpochDay() >= from)
+                            && LocalDate.of(year, 1, 1).toEpochDay() <= olderTo) {
+                        years.add(year);
+                    }
+                }
+                segments.add(new TransactionSegment(filter.withEpochDayRange(from, olderTo), false, years));
+            }
+        }
+        if (!filter.hasDateRange()) {
+            segments.add(new TransactionSegment(filter, true, List.of()));
+        }
+        return segments;
+    }
+
+    /**
+     * True if a page that ended at {@code key} continues in this segment. Segments are checked in order,
+     * so a dated key belongs to the first dated segment that does not end above it.
+     */
+    boolean contains(TransactionPage.Key key) {
+        if (undated) {
+            return key.getEpochDay() == null;
+        }
+        return key.getEpochDay() != null
+                && (filter.getFromEpochDay() == null || key.getEpochDay() >= filter.getFromEpochDay());
+    }
+
+    /**
+     * The given columns of the segment's rows, after {@code afterKey} when it is not null, as one
+     * SELECT per table joined with UNION ALL. Bind it with {@link #bind}. Callers that append
+     * {@link #NEWEST_FIRST} must select epochDay and id, as a compound SELECT can only be ordered
+     * by its result columns.
+     */
+    String select(Connection conn, String columns, TransactionPage.Key afterKey) throws SQLException {
+        String where = where(afterKey);
+        StringBuilder query = new StringBuilder("SELECT ").append(columns).append(" FROM Transactions").append(where);
+        for (int year : archiveYears) {
+            query.append(" UNION ALL SELECT ").append(columns).append(" FROM ")
+                    .append(TransactionArchive.attach(conn, year)).append(where);
+        }
+        return query.toString();
+    }
+
+    int bind(PreparedStatement stmt, int index, int userId, TransactionPage.Key afterKey) throws SQLException {
+        TransactionFilter seek = seekFilter(afterKey);
+        for (int table = 0; table <= archiveYears.size(); table++) {
+            stmt.setInt(index++, userId);
+            index = TransactionManager.bindFilter(stmt, index, seek);
+            if (afterKey != null) {
+                if (!undated) {
+                    stmt.setInt(index++, afterKey.getEpochDay());
+                }
+                stmt.setInt(index++, afterKey.getId());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * {@link #select} over several segments, e.g. all of a filter's for an aggregate.
+     */
+    static String selectAll(Connection conn, List<TransactionSegment> segments, String columns) throws SQLException {
+        List<String> selects = new ArrayList<>();
+        for (TransactionSegment segment : segments) {
+            selects.add(segment.select(conn, columns, null));
+        }
+        return String.join(" UNION ALL ", selects);
+    }
+
+    static int bindAll(PreparedStatement stmt, int index, List<TransactionSegment> segments, int userId)
+            throws SQLException {
+        for (TransactionSegment segment : segments) {
+            index = segment.bind(stmt, index, userId, null);
+        }
+        return index;
+    }
+
+    private String where(TransactionPage.Key afterKey) {
+        TransactionFilter seek = seekFilter(afterKey);
+        String where = " WHERE userId = ?" + TransactionManager.filterClause(seek);
+        if (undated) {
+            where += " AND epochDay IS NULL";
+        } else if (!seek.hasDateRange()) {
+            where += " AND epochDay IS NOT NULL";
+        }
+        if (afterKey != null) {
+            where += undated ? " AND id < ?" : " AND (epochDay, id) < (?, ?)";
+        }
+        return where;
+    }
+
+    // The key already lies inside the range, so the range's end is left out: with both it and
+    // the key as upper bounds, SQLite seeks to the end and walks back to the key
+    private TransactionFilter seekFilter(TransactionPage.Key afterKey) {
+        return afterKey == null || undated ? filter : filter.withEpochDayRange(filter.getFromEpochDay(), null);
+    }
+}
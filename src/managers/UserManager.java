@@ -1,69 +1,118 @@
 package managers;
 
 import database.DatabaseConnection;
+import models.UserProfile;
+import util.Metrics;
+import util.OperationStats;
+import util.PasswordHasher;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+/**
+ * Registration and login. Passwords are stored as salted hashes (see PasswordHasher), so
+ * registerUser and authenticate are deliberately slow and must run off the FX Application Thread.
+ */
 public class UserManager {
 
+    // Timings of the public methods, published over JMX as pfms:type=UserManager,name=<method>
+    private static final OperationStats REGISTER_USER = Metrics.operation("UserManager", "registerUser");
+    private static final OperationStats AUTHENTICATE = Metrics.operation("UserManager", "authenticate");
+    private static final OperationStats GET_USER_ID = Metrics.operation("UserManager", "getUserId");
+
+    // Checked when the username does not exist, so an unknown name costs as much as a wrong password
+    // and login time does not tell which usernames are registered. Made on first use, at the current cost.
+    private static class UnknownUserHash {
+        static final String VALUE = PasswordHasher.hash("");
+    }
+
     public boolean registerUser(String username, String password) {
+        long start = System.nanoTime();
         String query = "INSERT INTO Users (username, password) VALUES (?, ?)";
+        String hash = PasswordHasher.hash(password);
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, username);
-            stmt.setString(2, password);
+            stmt.setString(2, hash);
             stmt.executeUpdate();
-            return true;
         } catch (SQLException e) {
+            REGISTER_USER.recordError(start);
             System.err.println("Registration failed: " + e.getMessage());
             return false;
         }
+        REGISTER_USER.record(start, 1);
+        return true;
     }
 
-    public boolean loginUser(String username, String password) {
-        String query = "SELECT * FROM Users WHERE username = ? AND password = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
+    /**
+     * Checks a username and password with a single query and returns the user's profile,
+     * or null if either is wrong. A hash made with a lower cost than the current setting
+     * is replaced after a successful check.
+     */
+    public UserProfile authenticate(String username, String password) {
+        long start = System.nanoTime();
+        String query = "SELECT id, username, password FROM Users WHERE username = ?";
+        UserProfile profile = null;
+        String stored = null;
+        try (Connection conn = DatabaseConnection.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, username);
-            stmt.setString(2, password);
             ResultSet rs = stmt.executeQuery();
-            return rs.next();
+            if (rs.next()) {
+                profile = new UserProfile(rs.getInt("id"), rs.getString("username"));
+                stored = rs.getString("password");
+            }
         } catch (SQLException e) {
+            AUTHENTICATE.recordError(start);
             System.err.println("Login failed: " + e.getMessage());
-            return false;
+            return null;
+        }
+        if (profile == null) {
+            PasswordHasher.verify(password, UnknownUserHash.VALUE);
+            AUTHENTICATE.record(start, 0);
+            return null;
+        }
+        if (!PasswordHasher.verify(password, stored)) {
+            AUTHENTICATE.record(start, 0);
+            return null;
         }
+        if (PasswordHasher.needsRehash(stored)) {
+            updatePasswordHash(profile.getId(), PasswordHasher.hash(password));
+        }
+        AUTHENTICATE.record(start, 1);
+        return profile;
     }
 
     public int getUserId(String username) {
+        long start = System.nanoTime();
         String query = "SELECT id FROM Users WHERE username = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
+        int id = -1;
+        try (Connection conn = DatabaseConnection.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, username);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return rs.getInt("id");
+                id = rs.getInt("id");
             }
         } catch (SQLException e) {
+            GET_USER_ID.recordError(start);
             System.err.println("Error retrieving user ID: " + e.getMessage());
+            return -1;
         }
-        return -1;
+        GET_USER_ID.record(start, id < 0 ? 0 : 1);
+        return id;
     }
-    
-    public String getUsernameById(int userId) {
+
+    private void updatePasswordHash(int userId, String hash) {
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement("SELECT username FROM Users WHERE id = ?")) {
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("username");
-            }
+             PreparedStatement stmt = conn.prepareStatement("UPDATE Users SET password = ? WHERE id = ?")) {
+            stmt.setString(1, hash);
+            stmt.setInt(2, userId);
+            stmt.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            System.err.println("Error upgrading password hash: " + e.getMessage());
         }
-        return "Unknown";
     }
-
 }
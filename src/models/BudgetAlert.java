@@ -0,0 +1,56 @@
+package models;
+
+/**
+ * Raised when a category's spending in a budget period reaches a threshold of its budget.
+ */
+public class BudgetAlert {
+    private final int userId;
+    private final String category;
+    private final String period; // "YYYY-MM"
+    private final int thresholdPercent;
+    private final Money spent;
+    private final Money budget;
+
+    public BudgetAlert(int userId, String category, String period, int thresholdPercent, Money spent, Money budget) {
+        this.userId = userId;
+        this.category = category;
+        this.period = period;
+        this.thresholdPercent = thresholdPercent;
+        this.spent = spent;
+        this.budget = budget;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public int getThresholdPercent() {
+        return thresholdPercent;
+    }
+
+    public Money getSpent() {
+        return spent;
+    }
+
+    public Money getBudget() {
+        return budget;
+    }
+
+    public boolean isOverBudget() {
+        return thresholdPercent >= 100;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: $%s of $%s spent in %s (%d%% alert)",
+                category, spent.format(), budget.format(), period, thresholdPercent);
+    }
+}
@@ -0,0 +1,109 @@
+package models;
+
+import java.math.BigDecimal;
+
+/**
+ * An exact amount of money held as a whole number of cents.
+ *
+ * Amounts are stored as INTEGER cents in the database and added as longs, so totals
+ * never drift and always match SQL SUM exactly. Doubles only appear at the edges,
+ * e.g. as chart values.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Parses an amount such as "12", "12.5", "-1,234.56" or "$9.99".
+     *
+     * @throws NumberFormatException if the text is not a number or has more than two decimals
+     */
+    public static Money parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("No amount");
+        }
+        return of(new BigDecimal(text.trim().replace("$", "").replace(",", "")));
+    }
+
+    /**
+     * @throws NumberFormatException if the value has more than two decimals or does not fit in a long of cents
+     */
+    public static Money of(BigDecimal value) {
+        try {
+            return ofCents(value.movePointRight(2).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amounts have at most two decimals: " + value);
+        }
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money negate() {
+        return ofCents(-cents);
+    }
+
+    public Money abs() {
+        return cents < 0 ? negate() : this;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    /**
+     * The amount in whole currency units, for charts and other display-only uses.
+     */
+    public double toDouble() {
+        return cents / 100.0;
+    }
+
+    /**
+     * Grouped for display, e.g. "1,234.56".
+     */
+    public String format() {
+        return String.format("%s%,d.%02d", cents < 0 ? "-" : "", Math.abs(cents / 100), Math.abs(cents % 100));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * Plain decimal form, e.g. "-1234.56"; {@link #parse(String)} reads it back.
+     */
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+}
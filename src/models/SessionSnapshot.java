@@ -0,0 +1,41 @@
+package models;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the dashboard needs for its first frame, read right after login from one snapshot of the database.
+ */
+public class SessionSnapshot {
+    private final UserProfile profile;
+    private final Map<String, Money> budgets;
+    private final List<BudgetAlert> budgetAlerts;
+    private final int transactionCount;
+
+    public SessionSnapshot(UserProfile profile, Map<String, Money> budgets, List<BudgetAlert> budgetAlerts,
+                           int transactionCount) {
+        this.profile = profile;
+        this.budgets = budgets;
+        this.budgetAlerts = budgetAlerts;
+        this.transactionCount = transactionCount;
+    }
+
+    public UserProfile getProfile() {
+        return profile;
+    }
+
+    public Map<String, Money> getBudgets() {
+        return budgets;
+    }
+
+    /**
+     * Budget thresholds the current month had already reached at login.
+     */
+    public List<BudgetAlert> getBudgetAlerts() {
+        return budgetAlerts;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+}
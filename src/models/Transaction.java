@@ -4,10 +4,10 @@ public class Transaction {
     private int id; // Unique transaction ID
     private String date;
     private String description;
-    private double amount;
+    private Money amount;
     private String type;
 
-    public Transaction(int id, String date, String description, double amount, String type) {
+    public Transaction(int id, String date, String description, Money amount, String type) {
         this.id = id;
         this.date = date;
         this.description = description;
@@ -40,11 +40,11 @@ public class Transaction {
         this.description = description;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
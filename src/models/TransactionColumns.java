@@ -0,0 +1,193 @@
+package models;
+
+import util.DateUtils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only snapshot of a user's transactions stored column by column for analytics.
+ *
+ * Each row is an epoch day, an amount in cents, a category id (as stored in the Categories
+ * table) and one bit for its type, i.e. about 16 bytes instead of a Transaction object with three
+ * strings. The group-by methods are plain loops over the arrays and allocate nothing per row.
+ */
+public class TransactionColumns {
+
+    /** Epoch day stored for rows whose date could not be parsed. */
+    public static final int UNDATED = Integer.MIN_VALUE;
+
+    private final int size;
+    private final int[] epochDays;
+    private final long[] amountCents;
+    private final int[] categoryIds;
+    private final String[] categories;
+    private final BitSet expense;
+    private final int firstMonth;
+    private final int lastMonth;
+
+    private TransactionColumns(Builder builder, String[] categories) {
+        this.size = builder.size;
+        this.epochDays = Arrays.copyOf(builder.epochDays, builder.size);
+        this.amountCents = Arrays.copyOf(builder.amountCents, builder.size);
+        this.categoryIds = Arrays.copyOf(builder.categoryIds, builder.size);
+        this.categories = categories;
+        this.expense = (BitSet) builder.expense.clone();
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (epochDays[i] != UNDATED) {
+                int month = DateUtils.epochMonth(epochDays[i]);
+                first = Math.min(first, month);
+                last = Math.max(last, month);
+            }
+        }
+        this.firstMonth = first;
+        this.lastMonth = last;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCategoryCount() {
+        return categories.length;
+    }
+
+    public String getCategoryName(int categoryId) {
+        return categories[categoryId];
+    }
+
+    /**
+     * First month (see {@link DateUtils#epochMonth(int)}) with a dated row, or Integer.MAX_VALUE if there is none.
+     */
+    public int getFirstMonth() {
+        return firstMonth;
+    }
+
+    public int getLastMonth() {
+        return lastMonth;
+    }
+
+    /**
+     * Number of slots monthlyTotals() fills: one per month from the first to the last dated row.
+     */
+    public int getMonthCount() {
+        return size == 0 || firstMonth > lastMonth ? 0 : lastMonth - firstMonth + 1;
+    }
+
+    /**
+     * Sums the amounts of one type per category into {@code totals}, indexed by category id.
+     * The array can be reused between calls; it must hold at least getCategoryCount() slots.
+     */
+    public long[] categoryTotals(boolean expenses, long[] totals) {
+        Arrays.fill(totals, 0, categories.length, 0L);
+        for (int i = 0; i < size; i++) {
+            if (expense.get(i) == expenses) {
+                totals[categoryIds[i]] += amountCents[i];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Sums the amounts of one type per month into {@code totals}, where slot 0 is getFirstMonth().
+     * Undated rows are skipped. The array must hold at least getMonthCount() slots.
+     */
+    public long[] monthlyTotals(boolean expenses, long[] totals) {
+        Arrays.fill(totals, 0, getMonthCount(), 0L);
+        for (int i = 0; i < size; i++) {
+            if (expense.get(i) == expenses && epochDays[i] != UNDATED) {
+                totals[DateUtils.epochMonth(epochDays[i]) - firstMonth] += amountCents[i];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Same shape as TransactionManager.getCategoryTotals; only the result map is allocated.
+     */
+    public Map<String, Money> getCategoryTotals(String type) {
+        boolean expenses = "Expense".equals(type);
+        long[] totals = categoryTotals(expenses, new long[categories.length]);
+        // A category whose amounts cancel out to 0 still has rows, so presence is not read off the sum
+        BitSet present = new BitSet(categories.length);
+        for (int i = 0; i < size; i++) {
+            if (expense.get(i) == expenses) {
+                present.set(categoryIds[i]);
+            }
+        }
+        Map<String, Money> result = new HashMap<>();
+        for (int id = 0; id < totals.length; id++) {
+            if (present.get(id)) {
+                result.put(categories[id], Money.ofCents(totals[id]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same shape as TransactionManager.getMonthlyTotals for the dated rows.
+     */
+    public Map<String, Money> getMonthlyTotals(String type) {
+        boolean expenses = "Expense".equals(type);
+        long[] totals = monthlyTotals(expenses, new long[getMonthCount()]);
+        BitSet present = new BitSet(totals.length);
+        for (int i = 0; i < size; i++) {
+            if (expense.get(i) == expenses && epochDays[i] != UNDATED) {
+                present.set(DateUtils.epochMonth(epochDays[i]) - firstMonth);
+            }
+        }
+        Map<String, Money> result = new TreeMap<>();
+        for (int slot = 0; slot < totals.length; slot++) {
+            if (present.get(slot)) {
+                result.put(DateUtils.monthKey(firstMonth + slot), Money.ofCents(totals[slot]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects rows into growing arrays.
+     */
+    public static class Builder {
+        private int size;
+        private int[] epochDays;
+        private long[] amountCents;
+        private int[] categoryIds;
+        private final BitSet expense = new BitSet();
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            epochDays = new int[capacity];
+            amountCents = new long[capacity];
+            categoryIds = new int[capacity];
+        }
+
+        public Builder add(int epochDay, int categoryId, long amountCents, String type) {
+            if (size == epochDays.length) {
+                int capacity = size + (size >> 1);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+                this.amountCents = Arrays.copyOf(this.amountCents, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+            }
+            epochDays[size] = epochDay;
+            this.amountCents[size] = amountCents;
+            categoryIds[size] = categoryId;
+            expense.set(size, "Expense".equals(type));
+            size++;
+            return this;
+        }
+
+        /**
+         * @param categories category names indexed by id; must cover every id added
+         */
+        public TransactionColumns build(String[] categories) {
+            return new TransactionColumns(this, categories);
+        }
+    }
+}
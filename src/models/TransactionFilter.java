@@ -0,0 +1,82 @@
+package models;
+
+import java.time.LocalDate;
+
+/**
+ * Restricts a query to a date range, a type and/or a category. Unset parts match everything;
+ * ALL matches every row, including rows whose date could not be parsed.
+ * A filter with a date range only matches dated rows.
+ */
+public class TransactionFilter {
+
+    public static final TransactionFilter ALL = new TransactionFilter(null, null, null, null);
+
+    private final Integer fromEpochDay;
+    private final Integer toEpochDay;
+    private final String type;
+    private final String category;
+
+    private TransactionFilter(Integer fromEpochDay, Integer toEpochDay, String type, String category) {
+        this.fromEpochDay = fromEpochDay;
+        this.toEpochDay = toEpochDay;
+        this.type = type;
+        this.category = category;
+    }
+
+    /**
+     * Rows dated from {@code from} to {@code to}, both inclusive; either end may be null for an open range.
+     */
+    public static TransactionFilter between(LocalDate from, LocalDate to) {
+        return ALL.withRange(from, to);
+    }
+
+    public TransactionFilter withRange(LocalDate from, LocalDate to) {
+        return withEpochDayRange(from == null ? null : (int) from.toEpochDay(), to == null ? null : (int) to.toEpochDay());
+    }
+
+    /**
+     * Same as {@link #withRange} with days since 1970-01-01, the form stored in Transactions.epochDay.
+     */
+    public TransactionFilter withEpochDayRange(Integer fromEpochDay, Integer toEpochDay) {
+        return new TransactionFilter(fromEpochDay, toEpochDay, type, category);
+    }
+
+    public TransactionFilter withType(String type) {
+        return new TransactionFilter(fromEpochDay, toEpochDay, type, category);
+    }
+
+    public TransactionFilter withCategory(String category) {
+        return new TransactionFilter(fromEpochDay, toEpochDay, type, category);
+    }
+
+    public Integer getFromEpochDay() {
+        return fromEpochDay;
+    }
+
+    public Integer getToEpochDay() {
+        return toEpochDay;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean hasDateRange() {
+        return fromEpochDay != null || toEpochDay != null;
+    }
+
+    public boolean isAll() {
+        return !hasDateRange() && type == null && category == null;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionFilter[from=" + (fromEpochDay == null ? "" : LocalDate.ofEpochDay(fromEpochDay))
+                + ", to=" + (toEpochDay == null ? "" : LocalDate.ofEpochDay(toEpochDay))
+                + ", type=" + (type == null ? "" : type) + ", category=" + (category == null ? "" : category) + "]";
+    }
+}
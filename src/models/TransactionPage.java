@@ -0,0 +1,51 @@
+package models;
+
+import java.util.List;
+
+/**
+ * One page of a user's transactions, newest first, plus the key to pass back
+ * to fetch the page that follows it.
+ */
+public class TransactionPage {
+
+    /**
+     * Position of a row in the (epochDay DESC, id DESC) ordering.
+     * Rows whose date could not be parsed have no epochDay and sort after all dated rows.
+     */
+    public static class Key {
+        private final Integer epochDay;
+        private final int id;
+
+        public Key(Integer epochDay, int id) {
+            this.epochDay = epochDay;
+            this.id = id;
+        }
+
+        public Integer getEpochDay() {
+            return epochDay;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    private final List<Transaction> transactions;
+    private final Key nextKey;
+
+    public TransactionPage(List<Transaction> transactions, Key nextKey) {
+        this.transactions = transactions;
+        this.nextKey = nextKey;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Key of the last row on this page, or null when there are no more rows.
+     */
+    public Key getNextKey() {
+        return nextKey;
+    }
+}
@@ -0,0 +1,19 @@
+package models;
+
+public class UserProfile {
+    private final int id;
+    private final String username;
+
+    public UserProfile(int id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+}
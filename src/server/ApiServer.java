@@ -0,0 +1,671 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import managers.BudgetManager;
+import managers.BudgetMonitor;
+import managers.LedgerSummaryCache;
+import managers.SessionLoader;
+import managers.TransactionManager;
+import managers.UserManager;
+import models.BudgetAlert;
+import models.Money;
+import models.SessionSnapshot;
+import models.Transaction;
+import models.TransactionFilter;
+import models.TransactionPage;
+import models.UserProfile;
+import util.DateUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JSON API over the managers, so one process can serve every member of a household:
+ *
+ * <pre>
+ * POST   /api/login              {"username", "password"} -> {"token", ...}; send the token as "Authorization: Bearer ..."
+ * POST   /api/logout
+ * GET    /api/transactions       ?limit=50&amp;after=KEY, newest first; "next" is the KEY of the following page
+ * POST   /api/transactions       {"date", "category", "amount", "type"}
+ * PUT    /api/transactions/ID    same fields
+ * DELETE /api/transactions/ID
+ * GET    /api/budgets            budget and this month's spend per category
+ * PUT    /api/budgets            {"category", "amount"}
+ * GET    /api/summary            totals by type, month and category
+ *
+ * GET    /api/transactions and /api/summary also take from=YYYY-MM-DD, to=YYYY-MM-DD, type and category
+ * to narrow the rows; a page key is only valid with the filter it was returned for. q=WORDS on
+ * /api/transactions searches descriptions by word prefix and returns the best matches first.
+ * GET    /api/alerts             budget alerts raised since the last call
+ * </pre>
+ *
+ * Each request runs on its own virtual thread when the JVM has them (Java 21+) and on a fixed
+ * pool of pfms.server.threads threads otherwise. Summaries and budget spend come from the same
+ * delta-maintained caches the desktop app uses, loaded once per user at login; writes go through
+ * the write queue, so concurrent clients share group commits instead of contending for the writer.
+ */
+public class ApiServer {
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static class Session {
+        final UserProfile profile;
+        final Queue<BudgetAlert> alerts = new ConcurrentLinkedQueue<>();
+        volatile long lastUsedNanos = System.nanoTime();
+
+        Session(UserProfile profile) {
+            this.profile = profile;
+        }
+    }
+
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // Marks a response body as a newly created resource (201)
+    private static class Created {
+        final Object body;
+
+        Created(Object body) {
+            this.body = body;
+        }
+    }
+
+    static {
+        // Otherwise the response body waits behind the client's delayed ACK of the headers, about 40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final UserManager userManager = new UserManager();
+    private final TransactionManager transactionManager = new TransactionManager();
+    private final BudgetManager budgetManager = new BudgetManager();
+    private final LedgerSummaryCache summaryCache = new LedgerSummaryCache(transactionManager);
+    private final BudgetMonitor budgetMonitor = new BudgetMonitor(transactionManager, budgetManager);
+    private final SessionLoader sessionLoader =
+            new SessionLoader(transactionManager, budgetManager, summaryCache, budgetMonitor);
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long sessionTimeoutNanos =
+            TimeUnit.MINUTES.toNanos(Integer.getInteger("pfms.server.sessionTimeoutMinutes", 30));
+    private final SecureRandom random = new SecureRandom();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public ApiServer(InetSocketAddress address) throws IOException {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        executor = virtual != null ? virtual : Executors.newFixedThreadPool(
+                Integer.getInteger("pfms.server.threads", 32), new DaemonThreadFactory());
+        server = HttpServer.create(address, 0);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+        budgetMonitor.addAlertListener(alert -> {
+            for (Session session : sessions.values()) {
+                if (session.profile.getId() == alert.getUserId()) {
+                    session.alerts.add(alert);
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting connections, waits up to delaySeconds for requests in progress, then releases the request threads.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up at run time so the code still builds for Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // The exchange is closed even when an Error escapes, or the client would wait for a response forever
+    private void handle(HttpExchange exchange) {
+        try {
+            int status;
+            Object body;
+            try {
+                String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+                body = route(exchange, exchange.getRequestMethod(), path);
+                if (body instanceof Created) {
+                    status = 201;
+                    body = ((Created) body).body;
+                } else {
+                    status = body == null ? 204 : 200;
+                }
+            } catch (ApiException e) {
+                status = e.status;
+                body = Map.of("error", e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI() + ": " + e);
+                status = 500;
+                body = Map.of("error", "Internal error");
+            }
+            send(exchange, status, body);
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Object route(HttpExchange exchange, String method, String[] path) {
+        String resource = path[0];
+        if (resource.equals("login") && path.length == 1) {
+            requireMethod(method, "POST");
+            return login(readObject(exchange));
+        }
+        Session session = authenticate(exchange);
+        int userId = session.profile.getId();
+        switch (resource) {
+            case "logout":
+                requireMethod(method, "POST");
+                logout(exchange);
+                return null;
+            case "transactions":
+                if (path.length == 1) {
+                    if (method.equals("GET")) {
+                        return listTransactions(userId, queryParameters(exchange));
+                    }
+                    requireMethod(method, "POST");
+                    return addTransaction(userId, readObject(exchange));
+                }
+                if (path.length == 2) {
+                    int id = parseId(path[1]);
+                    if (method.equals("DELETE")) {
+                        return deleteTransaction(userId, id);
+                    }
+                    requireMethod(method, "PUT");
+                    return updateTransaction(userId, id, readObject(exchange));
+                }
+                break;
+            case "budgets":
+                if (path.length == 1) {
+                    if (method.equals("GET")) {
+                        return budgets(userId);
+                    }
+                    requireMethod(method, "PUT");
+                    return setBudget(userId, readObject(exchange));
+                }
+                break;
+            case "summary":
+                if (path.length == 1) {
+                    requireMethod(method, "GET");
+                    return summary(userId, parseFilter(queryParameters(exchange)));
+                }
+                break;
+            case "alerts":
+                if (path.length == 1) {
+                    requireMethod(method, "GET");
+                    List<Object> alerts = new ArrayList<>();
+                    BudgetAlert alert;
+                    while ((alert = session.alerts.poll()) != null) {
+                        alerts.add(toJson(alert));
+                    }
+                    return Map.of("alerts", alerts);
+                }
+                break;
+            default:
+                break;
+        }
+        throw new ApiException(404, "No such resource");
+    }
+
+    // Sessions
+
+    private Object login(Map<String, Object> request) {
+        String username = requireString(request, "username");
+        String password = requireString(request, "password");
+        expireSessions();
+        UserProfile profile = userManager.authenticate(username, password);
+        if (profile == null) {
+            throw new ApiException(401, "Invalid username or password");
+        }
+        SessionSnapshot snapshot;
+        try {
+            snapshot = sessionLoader.load(profile);
+        } catch (SQLException e) {
+            System.err.println("Error loading session: " + e.getMessage());
+            throw new ApiException(503, "Could not load the user's data");
+        }
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(profile));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token", token);
+        response.put("userId", profile.getId());
+        response.put("username", profile.getUsername());
+        response.put("transactionCount", snapshot.getTransactionCount());
+        List<Object> alerts = new ArrayList<>();
+        snapshot.getBudgetAlerts().forEach(alert -> alerts.add(toJson(alert)));
+        response.put("alerts", alerts);
+        return response;
+    }
+
+    private Session authenticate(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        Session session = header != null && header.startsWith("Bearer ")
+                ? sessions.get(header.substring("Bearer ".length()).trim()) : null;
+        long now = System.nanoTime();
+        if (session == null || now - session.lastUsedNanos > sessionTimeoutNanos) {
+            throw new ApiException(401, "Log in first");
+        }
+        session.lastUsedNanos = now;
+        return session;
+    }
+
+    private void logout(HttpExchange exchange) {
+        String token = exchange.getRequestHeaders().getFirst("Authorization").substring("Bearer ".length()).trim();
+        Session session = sessions.remove(token);
+        if (session != null) {
+            evictIfLastSession(session.profile.getId());
+        }
+    }
+
+    // Removes idle sessions; called on login so the map cannot grow without bound
+    private void expireSessions() {
+        long now = System.nanoTime();
+        sessions.entrySet().removeIf(entry -> {
+            if (now - entry.getValue().lastUsedNanos <= sessionTimeoutNanos) {
+                return false;
+            }
+            evictIfLastSession(entry.getValue().profile.getId());
+            return true;
+        });
+    }
+
+    // The user's caches stay loaded while any of their sessions is open
+    private void evictIfLastSession(int userId) {
+        long now = System.nanoTime();
+        boolean open = sessions.values().stream().anyMatch(session -> session.profile.getId() == userId
+                && now - session.lastUsedNanos <= sessionTimeoutNanos);
+        if (!open) {
+            summaryCache.evict(userId);
+            budgetMonitor.evict(userId);
+        }
+    }
+
+    // Transactions
+
+    private Object listTransactions(int userId, Map<String, String> query) {
+        int limit = DEFAULT_PAGE_SIZE;
+        if (query.containsKey("limit")) {
+            limit = parseInt(query.get("limit"), "limit");
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                throw new ApiException(400, "limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+        }
+        TransactionFilter filter = parseFilter(query);
+        TransactionPage.Key after = parseKey(query.get("after"));
+        String search = query.get("q");
+        TransactionPage page = search != null && !search.isBlank()
+                ? transactionManager.searchTransactions(userId, search, filter, after, limit)
+                : transactionManager.getTransactionsPage(userId, filter, after, limit);
+        List<Object> rows = new ArrayList<>(page.getTransactions().size());
+        page.getTransactions().forEach(transaction -> rows.add(toJson(transaction)));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("transactions", rows);
+        response.put("next", formatKey(page.getNextKey()));
+        return response;
+    }
+
+    private Object addTransaction(int userId, Map<String, Object> request) {
+        Transaction transaction = readTransaction(0, request);
+        return new Created(toJson(await(transactionManager.addTransactionAsync(userId, transaction))));
+    }
+
+    private Object updateTransaction(int userId, int id, Map<String, Object> request) {
+        Transaction transaction = readTransaction(id, request);
+        if (!await(transactionManager.updateTransactionAsync(userId, transaction))) {
+            throw notFoundOrArchived(userId, id);
+        }
+        return toJson(transaction);
+    }
+
+    private Object deleteTransaction(int userId, int id) {
+        if (await(transactionManager.deleteTransactionAsync(userId, id)) == null) {
+            throw notFoundOrArchived(userId, id);
+        }
+        return null;
+    }
+
+    // Archived transactions can be read but no longer changed
+    private ApiException notFoundOrArchived(int userId, int id) {
+        if (transactionManager.isArchived(userId, id)) {
+            return new ApiException(409, "The transaction is in an archived year and can no longer be changed");
+        }
+        return new ApiException(404, "No such transaction");
+    }
+
+    private Transaction readTransaction(int id, Map<String, Object> request) {
+        String date = requireString(request, "date");
+        if (DateUtils.parse(date) == null) {
+            throw new ApiException(400, "date must look like MM/DD/YYYY or YYYY-MM-DD");
+        }
+        String category = requireString(request, "category").trim();
+        if (category.isEmpty()) {
+            throw new ApiException(400, "category must not be empty");
+        }
+        String type = requireString(request, "type");
+        if (!type.equals("Income") && !type.equals("Expense")) {
+            throw new ApiException(400, "type must be Income or Expense");
+        }
+        Money amount = requireAmount(request);
+        return new Transaction(id, date, category, amount, type);
+    }
+
+    // Budgets and aggregates
+
+    private Object budgets(int userId) {
+        List<Object> rows = new ArrayList<>();
+        new TreeMap<>(budgetManager.getBudgets(userId))
+                .forEach((category, budget) -> rows.add(budgetJson(userId, category, budget)));
+        return Map.of("budgets", rows);
+    }
+
+    private Object setBudget(int userId, Map<String, Object> request) {
+        String category = requireString(request, "category").trim();
+        if (category.isEmpty()) {
+            throw new ApiException(400, "category must not be empty");
+        }
+        Money amount = requireAmount(request);
+        try {
+            budgetManager.setBudget(userId, category, amount);
+        } catch (SQLException e) {
+            System.err.println("Error setting budget: " + e.getMessage());
+            throw new ApiException(500, "The budget could not be saved");
+        }
+        budgetMonitor.onBudgetSet(userId, category, amount);
+        return budgetJson(userId, category, amount);
+    }
+
+    private Map<String, Object> budgetJson(int userId, String category, Money budget) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("category", category);
+        json.put("budget", budget);
+        json.put("spent", budgetMonitor.getSpent(userId, category));
+        return json;
+    }
+
+    // The whole ledger is answered from the summary cache; a filtered summary is aggregated by SQLite
+    private Object summary(int userId, TransactionFilter filter) {
+        boolean cached = filter.isAll();
+        Map<String, Money> totals = cached
+                ? summaryCache.getTotalsByType(userId) : transactionManager.getTotalsByType(userId, filter);
+        Money income = totals.getOrDefault("Income", Money.ZERO);
+        Money expenses = totals.getOrDefault("Expense", Money.ZERO);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("income", income);
+        response.put("expenses", expenses);
+        response.put("net", income.minus(expenses));
+        Map<String, Object> monthly = new LinkedHashMap<>();
+        Map<String, Object> categories = new LinkedHashMap<>();
+        for (String type : List.of("Income", "Expense")) {
+            if (filter.getType() != null && !filter.getType().equals(type)) {
+                continue;
+            }
+            monthly.put(type, cached
+                    ? summaryCache.getMonthlyTotals(userId, type) : transactionManager.getMonthlyTotals(userId, type, filter));
+            categories.put(type, new TreeMap<>(cached
+                    ? summaryCache.getCategoryTotals(userId, type) : transactionManager.getCategoryTotals(userId, type, filter)));
+        }
+        response.put("monthly", monthly);
+        response.put("categories", categories);
+        return response;
+    }
+
+    // JSON conversion
+
+    private static Map<String, Object> toJson(Transaction transaction) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", transaction.getId());
+        json.put("date", transaction.getDate());
+        json.put("category", transaction.getDescription());
+        json.put("amount", transaction.getAmount());
+        json.put("type", transaction.getType());
+        return json;
+    }
+
+    private static Map<String, Object> toJson(BudgetAlert alert) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("category", alert.getCategory());
+        json.put("period", alert.getPeriod());
+        json.put("thresholdPercent", alert.getThresholdPercent());
+        json.put("spent", alert.getSpent());
+        json.put("budget", alert.getBudget());
+        return json;
+    }
+
+    // A page key is "epochDay:id", with an empty epochDay for rows whose date could not be parsed
+    private static String formatKey(TransactionPage.Key key) {
+        if (key == null) {
+            return null;
+        }
+        return (key.getEpochDay() == null ? "" : key.getEpochDay().toString()) + ":" + key.getId();
+    }
+
+    private static TransactionPage.Key parseKey(String text) {
+        if (text == null) {
+            return null;
+        }
+        int colon = text.indexOf(':');
+        if (colon < 0) {
+            throw new ApiException(400, "after must be the next key of a previous page");
+        }
+        Integer epochDay = colon == 0 ? null : parseInt(text.substring(0, colon), "after");
+        return new TransactionPage.Key(epochDay, parseInt(text.substring(colon + 1), "after"));
+    }
+
+    private static TransactionFilter parseFilter(Map<String, String> query) {
+        TransactionFilter filter = TransactionFilter.ALL.withRange(parseDate(query.get("from"), "from"),
+                parseDate(query.get("to"), "to"));
+        String type = query.get("type");
+        if (type != null) {
+            if (!type.equals("Income") && !type.equals("Expense")) {
+                throw new ApiException(400, "type must be Income or Expense");
+            }
+            filter = filter.withType(type);
+        }
+        String category = query.get("category");
+        return category == null ? filter : filter.withCategory(category);
+    }
+
+    private static LocalDate parseDate(String text, String name) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, name + " must look like YYYY-MM-DD");
+        }
+    }
+
+    // Request helpers
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private static Map<String, Object> readObject(HttpExchange exchange) {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        } catch (IOException e) {
+            throw new ApiException(400, "Could not read the request body");
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Request body is too large");
+        }
+        Object value;
+        try {
+            value = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Malformed JSON: " + e.getMessage());
+        }
+        if (!(value instanceof Map)) {
+            throw new ApiException(400, "Expected a JSON object");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) value;
+        return object;
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String requireString(Map<String, Object> request, String field) {
+        Object value = request.get(field);
+        if (!(value instanceof String)) {
+            throw new ApiException(400, field + " is required");
+        }
+        return (String) value;
+    }
+
+    // Accepts 12.5 or "12.50"; a number is read as BigDecimal, so no binary rounding is involved.
+    // It is converted without toPlainString(), which would spell out an exponent such as 1e999999999.
+    private static Money requireAmount(Map<String, Object> request) {
+        Object value = request.get("amount");
+        if (value == null) {
+            throw new ApiException(400, "amount is required");
+        }
+        Money amount;
+        try {
+            amount = value instanceof BigDecimal ? Money.of((BigDecimal) value) : Money.parse(value.toString());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "amount must be a number with at most two decimals");
+        }
+        if (amount.isNegative()) {
+            throw new ApiException(400, "amount must not be negative");
+        }
+        return amount;
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "No such transaction");
+        }
+    }
+
+    private static int parseInt(String text, String name) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a whole number");
+        }
+    }
+
+    // Waits for a queued write; its failure becomes a 503 so the client can retry
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            System.err.println("Error writing transaction: " + e.getCause().getMessage());
+            throw new ApiException(503, "The write could not be saved");
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        // Closing the request body first lets the server keep the connection open after a bodiless response
+        exchange.getRequestBody().close();
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pfms-http-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package server;
+
+import models.Money;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives a running ApiServer from a number of client threads and reports requests per second
+ * and latency percentiles per operation. It logs in once and shares the session, so the
+ * deliberately slow password check does not dominate the run.
+ *
+ * Each iteration is a read (a page of transactions, the summary or the budgets) or, with
+ * probability writePercent, an insert followed by a delete of the same row, so the ledger
+ * ends the run the size it started. Requests during the warm-up are sent but not counted.
+ */
+public class LoadGenerator {
+
+    private static final String[] OPERATIONS = {"list", "summary", "budgets", "add", "delete"};
+    private static final String[] CATEGORIES = {"Groceries", "Rent", "Transport", "Dining", "Utilities"};
+
+    private final URI base;
+    private final String username;
+    private final String password;
+    private final int threads;
+    private final Duration duration;
+    private final Duration warmup;
+    private final int writePercent;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public LoadGenerator(URI base, String username, String password, int threads,
+                         Duration duration, Duration warmup, int writePercent) {
+        this.base = base;
+        this.username = username;
+        this.password = password;
+        this.threads = threads;
+        this.duration = duration;
+        this.warmup = warmup;
+        this.writePercent = writePercent;
+    }
+
+    // Latencies in nanoseconds, one array per operation, filled by a single thread
+    private static class Recorder {
+        final long[][] latencies = new long[OPERATIONS.length][1024];
+        final int[] counts = new int[OPERATIONS.length];
+        final int[] errors = new int[OPERATIONS.length];
+
+        void record(int operation, long nanos) {
+            if (counts[operation] == latencies[operation].length) {
+                latencies[operation] = Arrays.copyOf(latencies[operation], counts[operation] * 2);
+            }
+            latencies[operation][counts[operation]++] = nanos;
+        }
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        String token = login();
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Recorder> recorders = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Recorder recorder = new Recorder();
+            recorders.add(recorder);
+            Thread worker = new Thread(() -> work(token, recorder, measureFrom, end), "pfms-load-" + (i + 1));
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        send("POST", "/api/logout", token, null);
+        return new Result(recorders, duration);
+    }
+
+    private String login() throws IOException, InterruptedException {
+        String body = Json.write(Map.of("username", username, "password", password));
+        HttpResponse<String> response = send("POST", "/api/login", null, body);
+        if (response.statusCode() != 200) {
+            throw new IOException("Login failed with status " + response.statusCode() + ": " + response.body());
+        }
+        return (String) ((Map<?, ?>) Json.parse(response.body())).get("token");
+    }
+
+    private void work(String token, Recorder recorder, long measureFrom, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            boolean measured = now >= measureFrom;
+            if (random.nextInt(100) < writePercent) {
+                String body = Json.write(Map.of(
+                        "date", LocalDate.now().minusDays(random.nextInt(365)).toString(),
+                        "category", CATEGORIES[random.nextInt(CATEGORIES.length)],
+                        "amount", Money.ofCents(100 + random.nextInt(10_000)),
+                        "type", "Expense"));
+                HttpResponse<String> added = call(recorder, measured, 3, "POST", "/api/transactions", token, body);
+                if (added != null && added.statusCode() == 201) {
+                    Object id = ((Map<?, ?>) Json.parse(added.body())).get("id");
+                    call(recorder, measured, 4, "DELETE", "/api/transactions/" + id, token, null);
+                }
+            } else {
+                int pick = random.nextInt(10);
+                if (pick < 5) {
+                    call(recorder, measured, 0, "GET", "/api/transactions?limit=50", token, null);
+                } else if (pick < 8) {
+                    call(recorder, measured, 1, "GET", "/api/summary", token, null);
+                } else {
+                    call(recorder, measured, 2, "GET", "/api/budgets", token, null);
+                }
+            }
+        }
+    }
+
+    // Returns null when the request failed outright
+    private HttpResponse<String> call(Recorder recorder, boolean measured, int operation,
+                                      String method, String path, String token, String body) {
+        long start = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = send(method, path, token, body);
+        } catch (IOException e) {
+            response = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (measured) {
+            recorder.record(operation, System.nanoTime() - start);
+            if (response == null || response.statusCode() >= 300) {
+                recorder.errors[operation]++;
+            }
+        }
+        return response;
+    }
+
+    private HttpResponse<String> send(String method, String path, String token, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(base.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    public static class Result {
+        private final long[][] latencies = new long[OPERATIONS.length][];
+        private final int[] errors = new int[OPERATIONS.length];
+        private final Duration duration;
+
+        Result(List<Recorder> recorders, Duration duration) {
+            this.duration = duration;
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                int total = 0;
+                for (Recorder recorder : recorders) {
+                    total += recorder.counts[op];
+                }
+                long[] merged = new long[total];
+                int offset = 0;
+                for (Recorder recorder : recorders) {
+                    System.arraycopy(recorder.latencies[op], 0, merged, offset, recorder.counts[op]);
+                    offset += recorder.counts[op];
+                    errors[op] += recorder.errors[op];
+                }
+                Arrays.sort(merged);
+                latencies[op] = merged;
+            }
+        }
+
+        public long getRequests() {
+            long requests = 0;
+            for (long[] operation : latencies) {
+                requests += operation.length;
+            }
+            return requests;
+        }
+
+        public double getRequestsPerSecond() {
+            return getRequests() / (duration.toNanos() / 1e9);
+        }
+
+        /**
+         * Latency in milliseconds at a percentile (0-100) over every measured request.
+         */
+        public double getPercentileMillis(double percentile) {
+            long[] all = new long[(int) getRequests()];
+            int offset = 0;
+            for (long[] operation : latencies) {
+                System.arraycopy(operation, 0, all, offset, operation.length);
+                offset += operation.length;
+            }
+            Arrays.sort(all);
+            return percentile(all, percentile);
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%,d requests in %d s: %,.0f requests/s, p50 %.2f ms, p99 %.2f ms%n",
+                    getRequests(), duration.toSeconds(), getRequestsPerSecond(),
+                    getPercentileMillis(50), getPercentileMillis(99));
+            out.printf("%-10s %10s %8s %10s %10s %10s%n", "operation", "requests", "errors", "p50 ms", "p99 ms", "max ms");
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                long[] sorted = latencies[op];
+                if (sorted.length == 0) {
+                    continue;
+                }
+                out.printf("%-10s %,10d %,8d %10.2f %10.2f %10.2f%n", OPERATIONS[op], sorted.length, errors[op],
+                        percentile(sorted, 50), percentile(sorted, 99), sorted[sorted.length - 1] / 1e6);
+            }
+        }
+
+        // Nearest-rank percentile of sorted nanosecond latencies, in milliseconds
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+}
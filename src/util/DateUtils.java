@@ -0,0 +1,103 @@
+package util;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+
+public class DateUtils {
+
+    // Formats accepted in the date column: the form asks for MM/DD/YYYY, older rows use YYYY-MM-DD.
+    // STRICT rejects impossible days such as 2024-02-30 instead of moving them to the month's end.
+    private static final DateTimeFormatter MONTH_DAY_YEAR = strict("M/d/uuuu");
+    private static final DateTimeFormatter YEAR_MONTH_DAY = strict("uuuu-M-d");
+    private static final DateTimeFormatter YEAR_MONTH_DAY_SLASHES = strict("uuuu/M/d");
+
+    private DateUtils() {
+    }
+
+    private static DateTimeFormatter strict(String pattern) {
+        return DateTimeFormatter.ofPattern(pattern).withResolverStyle(ResolverStyle.STRICT);
+    }
+
+    /**
+     * Parses a date as typed by the user.
+     * Returns null when the text matches none of the accepted formats.
+     */
+    public static LocalDate parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        DateTimeFormatter format = formatOf(trimmed);
+        if (format == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(trimmed, format);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Picks the one format the text can be in from where its first separator is, so a valid date
+    // is parsed once instead of failing through the other formats first
+    private static DateTimeFormatter formatOf(String text) {
+        int slash = text.indexOf('/');
+        if (slash == 1 || slash == 2) {
+            return MONTH_DAY_YEAR;
+        }
+        if (slash == 4) {
+            return YEAR_MONTH_DAY_SLASHES;
+        }
+        return text.length() > 4 && text.charAt(4) == '-' ? YEAR_MONTH_DAY : null;
+    }
+
+    /**
+     * Returns the "YYYY-MM" month a date belongs to. Dates that cannot be parsed fall back to
+     * their first seven characters, matching how the monthly SQL aggregates group them, and null
+     * stays null as it does in SQL.
+     */
+    public static String monthKey(String text) {
+        LocalDate date = parse(text);
+        if (date != null) {
+            return String.format("%04d-%02d", date.getYear(), date.getMonthValue());
+        }
+        if (text == null) {
+            return null;
+        }
+        return text.length() > 7 ? text.substring(0, 7) : text;
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01, or null if the text is not a valid date.
+     */
+    public static Integer toEpochDay(String text) {
+        LocalDate date = parse(text);
+        return date == null ? null : (int) date.toEpochDay();
+    }
+
+    /**
+     * Returns the month a day falls in as year * 12 + (month - 1), without allocating,
+     * so it can be called once per row in aggregation loops.
+     */
+    public static int epochMonth(int epochDay) {
+        // Proleptic Gregorian civil-from-days on 400-year eras starting in March
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Formats a value returned by {@link #epochMonth(int)} as "YYYY-MM".
+     */
+    public static String monthKey(int epochMonth) {
+        return String.format("%04d-%02d", Math.floorDiv(epochMonth, 12), Math.floorMod(epochMonth, 12) + 1);
+    }
+}
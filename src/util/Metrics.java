@@ -0,0 +1,75 @@
+package util;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the application's OperationStats and other MBeans.
+ *
+ * Nothing is published to JMX until enableJmx() is called, so the headless commands do not pay
+ * for starting the platform MBean server; the desktop app and server mode call it at start-up.
+ * Everything appears under the "pfms" domain, e.g. pfms:type=TransactionManager,name=getTransactionsPage.
+ */
+public class Metrics {
+
+    private static final Map<String, OperationStats> OPERATIONS = new ConcurrentHashMap<>();
+    private static final Map<String, Object> BEANS = new ConcurrentHashMap<>();
+    private static volatile boolean jmxEnabled;
+
+    private Metrics() {
+    }
+
+    public static OperationStats operation(String component, String name) {
+        return OPERATIONS.computeIfAbsent(component + "." + name, key -> {
+            OperationStats stats = new OperationStats(component, name);
+            register("pfms:type=" + component + ",name=" + name, stats);
+            return stats;
+        });
+    }
+
+    /**
+     * Every operation recorded so far, slowest mean first.
+     */
+    public static List<OperationStats> operations() {
+        List<OperationStats> all = new ArrayList<>(OPERATIONS.values());
+        all.sort(Comparator.comparingDouble(OperationStats::getMeanMillis).reversed());
+        return all;
+    }
+
+    /**
+     * Publishes an MBean under the given object name, now or once JMX is enabled.
+     */
+    public static void register(String objectName, Object mbean) {
+        BEANS.put(objectName, mbean);
+        if (jmxEnabled) {
+            publish(objectName, mbean);
+        }
+    }
+
+    public static synchronized void enableJmx() {
+        if (jmxEnabled) {
+            return;
+        }
+        jmxEnabled = true;
+        BEANS.forEach(Metrics::publish);
+    }
+
+    private static synchronized void publish(String objectName, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Error registering MBean " + objectName + ": " + e.getMessage());
+        }
+    }
+}
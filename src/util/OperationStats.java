@@ -0,0 +1,215 @@
+package util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Call count, errors, rows returned and a latency histogram for one operation, e.g.
+ * TransactionManager.getTransactionsPage. Obtained from Metrics.operation(); recording is
+ * lock-free and allocation-free, so it stays on in production.
+ *
+ * Latencies are counted in microsecond buckets, 16 per power of two, so percentiles are
+ * accurate to about 6% in constant memory however many calls are recorded.
+ */
+public class OperationStats implements OperationStatsMBean {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BIT = 40; // about 12 days in microseconds
+    private static final int BUCKETS = (MAX_BIT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final String component;
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    OperationStats(String component, String name) {
+        this.component = component;
+        this.name = name;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs the work and records how long it took and how many rows its result holds.
+     */
+    public <T> T time(Supplier<T> work, ToLongFunction<? super T> rowCount) {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = work.get();
+        } catch (RuntimeException | Error e) {
+            recordError(start);
+            throw e;
+        }
+        record(start, result == null ? 0 : rowCount.applyAsLong(result));
+        return result;
+    }
+
+    public <T> T time(Supplier<T> work) {
+        return time(work, result -> 0);
+    }
+
+    public void run(Runnable work) {
+        time(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Times from now until the future returned by the work completes.
+     */
+    public <T> CompletableFuture<T> timeAsync(Supplier<CompletableFuture<T>> work,
+                                              ToLongFunction<? super T> rowCount) {
+        long start = System.nanoTime();
+        return work.get().whenComplete((result, error) -> {
+            if (error != null) {
+                recordError(start);
+            } else {
+                record(start, result == null ? 0 : rowCount.applyAsLong(result));
+            }
+        });
+    }
+
+    /**
+     * Records a call that started at startNanos (a System.nanoTime() value) and has just finished.
+     */
+    public void record(long startNanos, long rowCount) {
+        long nanos = System.nanoTime() - startNanos;
+        buckets.incrementAndGet(bucketOf(nanos / 1000));
+        count.increment();
+        rows.add(rowCount);
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public void recordError(long startNanos) {
+        errors.increment();
+        record(startNanos, 0);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanRows() {
+        long calls = getCount();
+        return calls == 0 ? 0 : (double) getRows() / calls;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long calls = getCount();
+        return calls == 0 ? 0 : totalNanos.sum() / 1e6 / calls;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(50);
+    }
+
+    @Override
+    public double getP95Millis() {
+        return percentileMillis(95);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(99);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        errors.reset();
+        rows.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    /**
+     * The latency in milliseconds that the given percentage (0-100) of calls did not exceed.
+     */
+    public double percentileMillis(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundMicros(i) / 1e3, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s.%s: count=%d errors=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms rows/call=%.1f",
+                component, name, getCount(), getErrors(), getMeanMillis(), getP50Millis(), getP99Millis(),
+                getMaxMillis(), getMeanRows());
+    }
+
+    // Values below 16 get a bucket each; above that, each power of two is split into 16 buckets
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(Math.min(micros, (1L << (MAX_BIT + 1)) - 1));
+        int shift = msb - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((micros >> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,29 @@
+package util;
+
+/**
+ * JMX view of one timed operation; see OperationStats.
+ */
+public interface OperationStatsMBean {
+
+    String getName();
+
+    long getCount();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanRows();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
@@ -0,0 +1,99 @@
+package util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, stored as
+ * {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} with Base64 salt and hash.
+ *
+ * The iteration count is the cost: 600,000 by default, tunable with
+ * -Dpfms.password.iterations. Each hash records its own count, so changing the
+ * setting keeps old hashes valid and needsRehash() reports the ones to upgrade.
+ * Hashing takes a noticeable fraction of a second on purpose; never call it on the
+ * FX Application Thread.
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int DEFAULT_ITERATIONS = 600_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    public static int iterations() {
+        return Math.max(1, Integer.getInteger("pfms.password.iterations", DEFAULT_ITERATIONS));
+    }
+
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int iterations = iterations();
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + base64.encodeToString(salt)
+                + "$" + base64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Checks a password against a stored hash in constant time. Anything that is not
+     * a hash in this format never matches.
+     */
+    public static boolean verify(String password, String stored) {
+        String[] parts = split(stored);
+        if (parts == null) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static boolean isHash(String stored) {
+        return split(stored) != null;
+    }
+
+    /**
+     * True when a hash was made with fewer iterations than are configured now.
+     */
+    public static boolean needsRehash(String stored) {
+        String[] parts = split(stored);
+        try {
+            return parts == null || Integer.parseInt(parts[1]) < iterations();
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static String[] split(String stored) {
+        if (stored == null) {
+            return null;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length == 4 && parts[0].equals(PREFIX) ? parts : null;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}